@@ -0,0 +1,234 @@
+package org.mvk.blockLogger.bench;
+
+import org.mvk.blockLogger.Database;
+import org.mvk.blockLogger.Dictionaries;
+import org.mvk.blockLogger.JournalStorage;
+import org.mvk.blockLogger.LogAction;
+import org.mvk.blockLogger.LogEntry;
+import org.mvk.blockLogger.PackedPos;
+import org.mvk.blockLogger.Partitions;
+import org.mvk.blockLogger.SqliteStorage;
+import org.mvk.blockLogger.StorageEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Storages for the benchmarks, and seeded ones for the lookup benchmarks. Rows are spread
+ * over the last 90 days and a 2000x2000 area; one "hot" block gets {@link #HOT_ROWS} rows.
+ * Seeding 10M rows takes minutes, so each size is built once and kept in java.io.tmpdir.
+ */
+final class BenchDatabase {
+
+    static final String WORLD = "world";
+    static final int AREA = 2000;
+    static final long HOT_POS = PackedPos.pack(0, 64, 0);
+    static final int HOT_ROWS = 50;
+    static final int PARTITION_DAYS = 7;
+    static final int SEGMENT_MB = 64;
+
+    static final String SQLITE = "sqlite";
+    static final String JOURNAL = "journal";
+
+    private static final Logger LOGGER = Logger.getLogger("BlockLogger-Bench");
+    private static final String[] MATERIALS = {
+            "STONE", "DIRT", "GRASS_BLOCK", "OAK_PLANKS", "COBBLESTONE", "GLASS", "OAK_LOG", "SAND",
+            "GRAVEL", "TNT", "CHEST", "TORCH", "STONE_BRICKS", "BRICKS", "WHITE_WOOL", "IRON_BLOCK"
+    };
+    private static final int PLAYERS = 50;
+
+    private BenchDatabase() {
+    }
+
+    /**
+     * @param location file for sqlite, directory for journal
+     */
+    static StorageEngine storage(String engine, Path location) throws SQLException, IOException {
+        if (JOURNAL.equals(engine)) {
+            return new JournalStorage(location, SEGMENT_MB, 2, LOGGER);
+        }
+        return new SqliteStorage(open(location.toFile()), LOGGER);
+    }
+
+    static Path temp(String engine) throws IOException {
+        return JOURNAL.equals(engine) ? Files.createTempDirectory("blocklogger-bench-") : temp().toPath();
+    }
+
+    static void delete(String engine, Path location) throws IOException {
+        if (!JOURNAL.equals(engine)) {
+            delete(location.toFile());
+            return;
+        }
+        try (Stream<Path> files = Files.walk(location)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    static Database open(File file) throws SQLException {
+        Database database = new Database(file, LOGGER);
+        database.open(2, PARTITION_DAYS);
+        return database;
+    }
+
+    static File temp() throws IOException {
+        File file = Files.createTempFile("blocklogger-bench-", ".db").toFile();
+        file.delete();
+        return file;
+    }
+
+    static void delete(File file) {
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+
+    /**
+     * Storage of {@code engine} with {@code rows} block rows, seeded on first use.
+     */
+    static StorageEngine seeded(String engine, int rows) throws SQLException, IOException {
+        if (!JOURNAL.equals(engine)) return storage(engine, seeded(rows).toPath());
+
+        Path dir = Path.of(System.getProperty("java.io.tmpdir"), "blocklogger-bench-journal-" + rows);
+        Path done = Path.of(dir + ".done");
+        if (Files.exists(dir) && Files.exists(done)) return storage(engine, dir);
+
+        if (Files.exists(dir)) delete(engine, dir);
+        StorageEngine storage = storage(engine, dir);
+        seed(storage, rows);
+        Files.createFile(done);
+        return storage;
+    }
+
+    /**
+     * Database with {@code rows} block rows, seeded on first use.
+     */
+    static File seeded(int rows) throws SQLException {
+        File file = new File(System.getProperty("java.io.tmpdir"), "blocklogger-bench-" + rows + ".db");
+        File done = new File(file.getPath() + ".done");
+        if (file.exists() && done.exists()) return file;
+
+        delete(file);
+        Database database = open(file);
+        try {
+            seed(database, rows);
+        } finally {
+            database.close();
+        }
+
+        try {
+            done.createNewFile();
+        } catch (IOException e) {
+            throw new SQLException("Cannot mark seeded database " + file, e);
+        }
+        return file;
+    }
+
+    private static void seed(Database database, int rows) throws SQLException {
+        Connection connection = database.writer().raw();
+        Dictionaries dictionaries = new Dictionaries(database.writer(), Dictionaries.Dialect.SQLITE, "");
+        Partitions partitions = database.partitions();
+        SplittableRandom random = new SplittableRandom(42);
+
+        connection.setAutoCommit(false);
+
+        int world = dictionaries.world(WORLD);
+        int[] actions = {
+                dictionaries.action(LogAction.PLACE.code()),
+                dictionaries.action(LogAction.BREAK.code())
+        };
+        int[] materials = new int[MATERIALS.length];
+        for (int i = 0; i < MATERIALS.length; i++) {
+            materials[i] = dictionaries.material(MATERIALS[i]);
+        }
+        int[] players = new int[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = dictionaries.player(new UUID(0, i), "Player" + i);
+        }
+
+        long span = TimeUnit.DAYS.toMillis(90);
+        long start = System.currentTimeMillis() - span;
+        int hotEvery = Math.max(1, rows / HOT_ROWS);
+        Map<String, PreparedStatement> inserts = new HashMap<>();
+
+        try {
+            for (int i = 0; i < rows; i++) {
+                long time = start + (span * i) / rows;
+                long pos = i % hotEvery == 0
+                        ? HOT_POS
+                        : PackedPos.pack(random.nextInt(AREA) - AREA / 2, random.nextInt(-64, 320), random.nextInt(AREA) - AREA / 2);
+
+                String table = partitions.tableFor(connection, Partitions.Kind.BLOCK, time);
+                PreparedStatement ps = inserts.get(table);
+                if (ps == null) {
+                    ps = connection.prepareStatement("INSERT INTO " + table
+                            + " (world, pos, action, material, player, time) VALUES (?, ?, ?, ?, ?, ?)");
+                    inserts.put(table, ps);
+                }
+
+                ps.setInt(1, world);
+                ps.setLong(2, pos);
+                ps.setInt(3, actions[i & 1]);
+                ps.setInt(4, materials[random.nextInt(materials.length)]);
+                ps.setInt(5, players[random.nextInt(players.length)]);
+                ps.setLong(6, time);
+                ps.addBatch();
+
+                if ((i + 1) % 50_000 == 0) {
+                    for (PreparedStatement insert : inserts.values()) insert.executeBatch();
+                    connection.commit();
+                }
+            }
+
+            for (PreparedStatement insert : inserts.values()) insert.executeBatch();
+            connection.commit();
+        } finally {
+            for (PreparedStatement insert : inserts.values()) insert.close();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Ті самі рядки, що й у SQLite, але через звичайний шлях запису
+    private static void seed(StorageEngine storage, int rows) throws SQLException {
+        SplittableRandom random = new SplittableRandom(42);
+
+        long span = TimeUnit.DAYS.toMillis(90);
+        long start = System.currentTimeMillis() - span;
+        int hotEvery = Math.max(1, rows / HOT_ROWS);
+        List<LogEntry> batch = new ArrayList<>();
+
+        for (int i = 0; i < rows; i++) {
+            long time = start + (span * i) / rows;
+            long pos = i % hotEvery == 0
+                    ? HOT_POS
+                    : PackedPos.pack(random.nextInt(AREA) - AREA / 2, random.nextInt(-64, 320), random.nextInt(AREA) - AREA / 2);
+            int player = random.nextInt(PLAYERS);
+
+            batch.add(new LogEntry.BlockEntry(WORLD, PackedPos.x(pos), PackedPos.y(pos), PackedPos.z(pos),
+                    (i & 1) == 0 ? LogAction.PLACE : LogAction.BREAK,
+                    MATERIALS[random.nextInt(MATERIALS.length)],
+                    new UUID(0, player), "Player" + player, time));
+
+            if (batch.size() == 50_000 || i == rows - 1) {
+                if (!storage.write(batch)) throw new SQLException("Seeding failed");
+                batch.clear();
+            }
+        }
+    }
+}
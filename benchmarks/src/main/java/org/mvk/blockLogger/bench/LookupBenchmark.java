@@ -0,0 +1,74 @@
+package org.mvk.blockLogger.bench;
+
+import org.mvk.blockLogger.HistoryRow;
+import org.mvk.blockLogger.PackedPos;
+import org.mvk.blockLogger.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-block lookup latency ({@code StorageEngine#blockHistory}, what the brush runs on a cache miss)
+ * on seeded databases of 1M and 10M rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({BenchDatabase.SQLITE, BenchDatabase.JOURNAL})
+    public String engine;
+
+    private StorageEngine storage;
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+        storage = BenchDatabase.seeded(engine, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storage.close();
+    }
+
+    /**
+     * Block with a long history: newest 10 of {@link BenchDatabase#HOT_ROWS} rows.
+     */
+    @Benchmark
+    public List<HistoryRow> hotBlock() throws SQLException {
+        return storage.blockHistory(BenchDatabase.WORLD, BenchDatabase.HOT_POS, 10);
+    }
+
+    /**
+     * Random block, usually with no history: every partition is probed.
+     */
+    @Benchmark
+    public List<HistoryRow> randomBlock() throws SQLException {
+        int half = BenchDatabase.AREA / 2;
+        long pos = PackedPos.pack(random.nextInt(BenchDatabase.AREA) - half, random.nextInt(-64, 320), random.nextInt(BenchDatabase.AREA) - half);
+        return storage.blockHistory(BenchDatabase.WORLD, pos, 10);
+    }
+}
@@ -0,0 +1,133 @@
+package org.mvk.blockLogger.bench;
+
+import org.mvk.blockLogger.HistoryCache;
+import org.mvk.blockLogger.LogAction;
+import org.mvk.blockLogger.LogEntry;
+import org.mvk.blockLogger.LogWriter;
+import org.mvk.blockLogger.PackedPos;
+import org.mvk.blockLogger.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Insert throughput of the write path: what {@code logBlock}, {@code logContainer} and {@code onExplode}
+ * do after reading the event (entry, queue, cache write-through), measured until the rows are committed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WriteBenchmark {
+
+    private static final int ENTRIES = 10_000;
+    private static final int EXPLOSION_BLOCKS = 1_000;
+    private static final UUID PLAYER = new UUID(0, 1);
+
+    @Param({"100", "500", "2000"})
+    public int batchSize;
+
+    @Param({BenchDatabase.SQLITE, BenchDatabase.JOURNAL})
+    public String engine;
+
+    private Path location;
+    private StorageEngine storage;
+    private LogWriter writer;
+    private HistoryCache cache;
+    private final SplittableRandom random = new SplittableRandom(3);
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+        location = BenchDatabase.temp(engine);
+        storage = BenchDatabase.storage(engine, location);
+        writer = new LogWriter(storage, Logger.getLogger("BlockLogger-Bench"), batchSize, 5L, 100_000);
+        writer.start();
+        cache = new HistoryCache(5000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.shutdown();
+        storage.close();
+        BenchDatabase.delete(engine, location);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public void blockEntries() throws InterruptedException {
+        long seq = 0;
+        for (int i = 0; i < ENTRIES; i++) {
+            LogEntry entry = new LogEntry.BlockEntry(BenchDatabase.WORLD,
+                    random.nextInt(2000), random.nextInt(-64, 320), random.nextInt(2000),
+                    (i & 1) == 0 ? LogAction.PLACE : LogAction.BREAK, "STONE",
+                    PLAYER, "Player1", System.currentTimeMillis());
+            seq = writer.submit(entry);
+            cache.written(entry, seq);
+        }
+        awaitCommit(seq);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public void containerEntries() throws InterruptedException {
+        long seq = 0;
+        for (int i = 0; i < ENTRIES; i++) {
+            LogEntry entry = new LogEntry.ContainerEntry(BenchDatabase.WORLD,
+                    random.nextInt(2000), 64, random.nextInt(2000),
+                    (i & 1) == 0 ? LogAction.PUT : LogAction.TAKE, "DIAMOND", null, 1 + random.nextInt(64),
+                    PLAYER, "Player1", System.currentTimeMillis());
+            seq = writer.submit(entry);
+            cache.written(entry, seq);
+        }
+        awaitCommit(seq);
+    }
+
+    /**
+     * One TNT explosion entry of {@link #EXPLOSION_BLOCKS} blocks, per block.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EXPLOSION_BLOCKS)
+    public void explosion() throws InterruptedException {
+        long[] positions = new long[EXPLOSION_BLOCKS];
+        String[] materials = new String[EXPLOSION_BLOCKS];
+        int x = random.nextInt(2000);
+        int z = random.nextInt(2000);
+        for (int i = 0; i < EXPLOSION_BLOCKS; i++) {
+            positions[i] = PackedPos.pack(x + i % 10, 60 + i / 100, z + (i / 10) % 10);
+            materials[i] = "STONE";
+        }
+
+        LogEntry entry = new LogEntry.ExplosionEntry(BenchDatabase.WORLD, positions, materials,
+                PLAYER, "Player1", System.currentTimeMillis());
+        long seq = writer.submit(entry);
+        cache.written(entry, seq);
+        awaitCommit(seq);
+    }
+
+    private void awaitCommit(long seq) throws InterruptedException {
+        while (writer.committed() < seq) {
+            Thread.sleep(0, 100_000);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.mvk.blockLogger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Everything one player did, newest first, across partitions and both log kinds.
+ * <p>
+ * Rows are ordered by (time, kind, id) descending. A page starts right after the last row
+ * of the previous page (keyset pagination), so each page is one index seek
+ * per kind instead of skipping rows with OFFSET.
+ * Page starts are remembered, so paging back and forth costs the same on any page.
+ */
+public class ActivityLookup {
+
+    public record Cursor(long time, int kind, long id) {
+    }
+
+    public record Row(Cursor cursor, String action, String material, int amount, String world, long pos) {
+    }
+
+    public record Page(int number, List<Row> rows, boolean hasMore) {
+    }
+
+    // Перед найновішим записом
+    private static final Cursor START = new Cursor(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private static final Comparator<Row> NEWEST_FIRST = Comparator
+            .comparingLong((Row r) -> r.cursor().time())
+            .thenComparingInt(r -> r.cursor().kind())
+            .thenComparingLong(r -> r.cursor().id())
+            .reversed();
+
+    private final StorageEngine storage;
+    private final String player;
+    private final String window;
+    private final long since;
+    private final int pageSize;
+
+    private final List<Cursor> starts = new ArrayList<>(List.of(START));
+
+    /**
+     * @param window time argument as typed, e.g. {@code 7d}; identifies the lookup for paging
+     * @param since  epoch millis, or {@link Long#MIN_VALUE} for all time
+     */
+    public ActivityLookup(StorageEngine storage, String player, String window, long since, int pageSize) {
+        this.storage = storage;
+        this.player = player;
+        this.window = window;
+        this.since = since;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    public boolean matches(String player, String window) {
+        return this.player.equalsIgnoreCase(player) && this.window.equalsIgnoreCase(window);
+    }
+
+    /**
+     * @param number 1-based; past the end, the last page is returned
+     */
+    public synchronized Page page(int number) throws SQLException {
+        number = Math.max(1, number);
+        // Сторінок, яких ще не бачили: пройти вперед від останнього відомого початку
+        while (starts.size() < number) {
+            List<Row> rows = fetch(starts.get(starts.size() - 1), pageSize + 1);
+            if (rows.size() <= pageSize) {
+                number = starts.size();
+                break;
+            }
+            starts.add(rows.get(pageSize - 1).cursor());
+        }
+
+        List<Row> rows = fetch(starts.get(number - 1), pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+            if (starts.size() == number) starts.add(rows.get(pageSize - 1).cursor());
+        }
+        return new Page(number, rows, hasMore);
+    }
+
+    private List<Row> fetch(Cursor after, int limit) throws SQLException {
+        List<Row> candidates = new ArrayList<>();
+
+        for (Partitions.Kind kind : Partitions.Kind.values()) {
+            int k = kind.ordinal();
+            // Той самий час може бути в обох видах записів: порядок (time, kind, id)
+            long id = k < after.kind() ? Long.MAX_VALUE : k == after.kind() ? after.id() : Long.MIN_VALUE;
+            candidates.addAll(storage.activity(kind, player, since, new StorageEngine.Cursor(after.time(), id), limit));
+        }
+
+        candidates.sort(NEWEST_FIRST);
+        return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+    }
+}
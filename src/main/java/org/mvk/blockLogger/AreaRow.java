@@ -0,0 +1,31 @@
+package org.mvk.blockLogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summary of changes in an area for one player, action and material.
+ *
+ * @param action action code, see {@link LogAction#fromCode(String)}
+ * @param total  row count for blocks, summed amount for container items
+ */
+public record AreaRow(String player, String action, String material, long total) {
+
+    /**
+     * Adds up rows with the same player, action and material (from different chunks,
+     * partitions or storages), largest first.
+     */
+    public static List<AreaRow> sum(List<AreaRow> rows) {
+        Map<String, AreaRow> totals = new HashMap<>();
+        for (AreaRow row : rows) {
+            totals.merge(row.player() + '\0' + row.action() + '\0' + row.material(), row,
+                    (a, b) -> new AreaRow(a.player(), a.action(), a.material(), a.total() + b.total()));
+        }
+
+        List<AreaRow> result = new ArrayList<>(totals.values());
+        result.sort((a, b) -> Long.compare(b.total(), a.total()));
+        return result;
+    }
+}
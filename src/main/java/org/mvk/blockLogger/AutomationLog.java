@@ -0,0 +1,193 @@
+package org.mvk.blockLogger;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Logging of automation: hoppers, pistons, fluids, fire. These fire far more often than player
+ * actions, so events are not written one by one: repeated events on one block with the same
+ * source, action and material within a window fold into one row (container rows carry the summed amount).
+ * <p>
+ * Each source has a sampling rate, and a cap on new rows per chunk and window; events over it are dropped.
+ * Thread-safe: on Folia events come from every region thread, the window is closed on the global one.
+ */
+public class AutomationLog {
+
+    public enum Source {
+        HOPPER("hopper"),
+        PISTON("piston"),
+        FLUID("fluid"),
+        FIRE("fire");
+
+        private final String key;
+
+        Source(String key) {
+            this.key = key;
+        }
+    }
+
+    private record Settings(boolean enabled, double sampleRate, int chunkCap) {
+        static final Settings OFF = new Settings(false, 0, 0);
+    }
+
+    private record Key(Source source, String world, long pos, LogAction action, String material, String actor) {
+    }
+
+    private record ChunkKey(Source source, String world, long chunk) {
+    }
+
+    private static final class Fold {
+        final long time;
+        int amount;
+
+        Fold(long time) {
+            this.time = time;
+        }
+    }
+
+    private final Consumer<LogEntry> sink;
+    private final SplittableRandom random = new SplittableRandom();
+    private final Map<Source, Settings> settings = new EnumMap<>(Source.class);
+    private long windowMs;
+    private int maxPending;
+
+    private Map<Key, Fold> pending = new HashMap<>();
+    // Нових рядків у чанку за поточне вікно
+    private final Map<ChunkKey, int[]> chunkRows = new HashMap<>();
+    private long windowStart = System.currentTimeMillis();
+
+    private volatile long events;
+    private volatile long sampledOut;
+    private volatile long capped;
+    private volatile long rows;
+
+    /**
+     * @param sink where folded rows go, e.g. the write queue
+     */
+    public AutomationLog(Consumer<LogEntry> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Reads the {@code automation} section; safe to call again on reload.
+     */
+    public synchronized void configure(@Nullable ConfigurationSection config) {
+        windowMs = config == null ? 30_000L : Math.max(1L, config.getLong("window_seconds", 30)) * 1000L;
+        maxPending = config == null ? 50_000 : Math.max(1, config.getInt("max_pending", 50_000));
+
+        for (Source source : Source.values()) {
+            ConfigurationSection section = config == null ? null : config.getConfigurationSection("sources." + source.key);
+            settings.put(source, section == null ? Settings.OFF : new Settings(
+                    section.getBoolean("enabled", true),
+                    Math.max(0.0, Math.min(1.0, section.getDouble("sample_rate", 1.0))),
+                    Math.max(0, section.getInt("chunk_cap", 64))
+            ));
+        }
+    }
+
+    /**
+     * Whether to log this event at all: the source is enabled and the event is in the sample.
+     * Call before reading anything from the event.
+     */
+    public synchronized boolean sample(Source source) {
+        Settings s = settings.get(source);
+        if (!s.enabled()) return false;
+
+        events++;
+        if (s.sampleRate() < 1.0 && random.nextDouble() >= s.sampleRate()) {
+            sampledOut++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Folds one change into the current window.
+     *
+     * @param amount item count for container actions, ignored for blocks
+     * @param actor  source name stored as the player, e.g. {@code #lava}
+     */
+    public synchronized void record(Source source, String world, int x, int y, int z,
+                       LogAction action, String material, int amount, String actor) {
+        long pos = PackedPos.pack(x, y, z);
+        Key key = new Key(source, world, pos, action, material, actor);
+
+        Fold fold = pending.get(key);
+        if (fold == null) {
+            // Новий рядок - лише в межах ліміту чанка
+            int[] count = chunkRows.computeIfAbsent(new ChunkKey(source, world, PackedPos.chunkKey(x >> 4, z >> 4)), k -> new int[1]);
+            if (count[0] >= settings.get(source).chunkCap()) {
+                capped++;
+                return;
+            }
+            count[0]++;
+
+            fold = new Fold(System.currentTimeMillis());
+            pending.put(key, fold);
+        }
+        fold.amount += amount;
+
+        // Забагато різних рядків - записати раніше, ліміти чанків діють до кінця вікна
+        if (pending.size() >= maxPending) drain();
+    }
+
+    /**
+     * Called every second; writes the window out once it has passed.
+     */
+    public synchronized void tick() {
+        if (System.currentTimeMillis() - windowStart >= windowMs) flush();
+    }
+
+    /**
+     * Writes all folded rows and starts a new window.
+     */
+    public synchronized void flush() {
+        drain();
+        chunkRows.clear();
+        windowStart = System.currentTimeMillis();
+    }
+
+    private void drain() {
+        Map<Key, Fold> folded = pending;
+        pending = new HashMap<>();
+
+        for (Map.Entry<Key, Fold> entry : folded.entrySet()) {
+            Key key = entry.getKey();
+            Fold fold = entry.getValue();
+            int x = PackedPos.x(key.pos());
+            int y = PackedPos.y(key.pos());
+            int z = PackedPos.z(key.pos());
+
+            if (key.source() == Source.HOPPER) {
+                sink.accept(new LogEntry.ContainerEntry(key.world(), x, y, z,
+                        key.action(), key.material(), null, fold.amount, null, key.actor(), fold.time));
+            } else {
+                sink.accept(new LogEntry.BlockEntry(key.world(), x, y, z,
+                        key.action(), key.material(), null, key.actor(), fold.time));
+            }
+            rows++;
+        }
+    }
+
+    public long events() {
+        return events;
+    }
+
+    public long sampledOut() {
+        return sampledOut;
+    }
+
+    public long capped() {
+        return capped;
+    }
+
+    public long rows() {
+        return rows;
+    }
+}
@@ -7,6 +7,8 @@ import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.*;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
 import org.bukkit.block.Container;
 import org.bukkit.block.DoubleChest;
 import org.bukkit.command.Command;
@@ -14,72 +16,102 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
+import org.bukkit.entity.TNTPrimed;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.entity.EntitySpawnEvent;
 import org.bukkit.event.inventory.*;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.ShapedRecipe;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scoreboard.Scoreboard;
-import org.bukkit.scoreboard.Team;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.sql.*;
-import java.time.Duration;
-import java.time.Instant;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
 
     // ===== CONFIG =====
     private FileConfiguration messages;
+    // Скомпільований знімок messages.yml, замінюється цілком при /bl reload
+    private volatile Messages text;
 
     // ===== DATABASE & API =====
-    protected Connection connection;
+    protected StorageEngine storage;
+    private LogWriter logWriter;
+    private ExecutorService lookupExecutor;
+    private Scheduling scheduling;
     private CoreProtectAPI cpApi;
+    private TntTracker tntTracker;
+    private HistoryCache historyCache;
+    private HighlightManager highlights;
+    private volatile RollbackJob rollbackJob;
+    private AutomationLog automation;
+    private final Metrics metrics = new Metrics();
+    private boolean metricsFileFailed;
 
     // ===== ITEM =====
     protected ItemStack historyBrush;
+    protected NamespacedKey brushKey;
 
     private static final String PERM_COMMAND = "blocklogger.command";
     private static final String PERM_HISTORY = "blocklogger.history";
     private static final String PERM_RELOAD = "blocklogger.reload";
     private static final String PERM_MAXLOG = "blocklogger.maxlog";
-    private int chatMaxLogs = 10;
-    private final Map<UUID, Block> openContainers = new HashMap<>();
+    private static final String PERM_ROLLBACK = "blocklogger.rollback";
+    private static final String PERM_STATS = "blocklogger.stats";
+    private static final int DEFAULT_CHAT_MAX_LOGS = 10;
+    // Мапи нижче спільні для всіх потоків регіонів на Folia
+    // /bl maxlog діє лише на гравця, який його викликав
+    private final Map<UUID, Integer> chatMaxLogs = new ConcurrentHashMap<>();
+    private final Map<UUID, ContainerSession> openContainers = new ConcurrentHashMap<>();
+    // Останній /bl player кожного адміністратора - щоб гортати сторінки без повторного пошуку
+    private final Map<UUID, ActivityLookup> activityLookups = new ConcurrentHashMap<>();
 
     private final MiniMessage mm = MiniMessage.miniMessage();
 
     protected Component c(String path) {
-        String raw = messages.getString(path, "<red>Missing: " + path);
-        return mm.deserialize(raw);
+        return text.get(path);
     }
 
     protected Component c(String path, String... replacements) {
-        String raw = messages.getString(path, path);
-
-        for (int i = 0; i < replacements.length; i += 2) {
-            raw = raw.replace(replacements[i], replacements[i + 1]);
-        }
-
-        return mm.deserialize(raw);
+        return text.format(path, replacements);
     }
 
     protected void sendOutput(Player player, ItemStack brush, Component message) {
@@ -103,7 +135,7 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
         }
     }
 
-    @EventHandler
+    @EventHandler(ignoreCancelled = true)
     public void onInventoryOpen(InventoryOpenEvent e) {
 
         if (!(e.getPlayer() instanceof Player player)) return;
@@ -111,7 +143,25 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
         Block block = getContainerBlock(e.getInventory());
         if (block == null) return;
 
-        openContainers.put(player.getUniqueId(), block);
+        ContainerSession session = new ContainerSession(block, player.getUniqueId(), player.getName());
+
+        if (isSessionLogging()) {
+            List<ContainerSession> viewers = sessionsAt(block);
+            if (viewers.isEmpty()) {
+                session.snapshot(e.getInventory().getContents());
+            } else {
+                // Кілька гравців в одному контейнері - зміни не розділити, переходимо на покліковий лог
+                for (ContainerSession viewer : viewers) {
+                    if (viewer.diffing()) {
+                        flushSession(viewer, e.getInventory().getContents());
+                        viewer.share();
+                    }
+                }
+                session.share();
+            }
+        }
+
+        openContainers.put(player.getUniqueId(), session);
     }
 
     @EventHandler
@@ -119,22 +169,97 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
 
         if (!(e.getPlayer() instanceof Player player)) return;
 
-        openContainers.remove(player.getUniqueId());
+        ContainerSession session = openContainers.remove(player.getUniqueId());
+        if (session == null) return;
+
+        if (session.diffing()) {
+            flushSession(session, e.getInventory().getContents());
+        } else if (session.shared()) {
+            List<ContainerSession> viewers = sessionsAt(session.block());
+            if (viewers.size() == 1) {
+                viewers.get(0).snapshot(e.getInventory().getContents());
+            }
+        }
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent e) {
+        activityLookups.remove(e.getPlayer().getUniqueId());
+    }
+
+    protected boolean isSessionLogging() {
+        return text.sessionLogging();
+    }
+
+    private List<ContainerSession> sessionsAt(Block block) {
+        List<ContainerSession> result = new ArrayList<>();
+        for (ContainerSession session : openContainers.values()) {
+            if (session.block().equals(block)) result.add(session);
+        }
+        return result;
+    }
+
+    private void flushSession(ContainerSession session, ItemStack[] contents) {
+        Map<ItemStack, Integer> delta = session.diff(contents);
+        if (delta.isEmpty() || logWriter == null) return;
+
+        String[] materials = new String[delta.size()];
+        byte[][] itemData = new byte[delta.size()][];
+        int[] deltas = new int[delta.size()];
+        int i = 0;
+        for (Map.Entry<ItemStack, Integer> entry : delta.entrySet()) {
+            materials[i] = entry.getKey().getType().name();
+            itemData[i] = ItemSnapshot.of(entry.getKey());
+            deltas[i] = entry.getValue();
+            i++;
+        }
+
+        Block block = session.block();
+        submit(new LogEntry.ContainerSessionEntry(
+                block.getWorld().getName(),
+                block.getX(),
+                block.getY(),
+                block.getZ(),
+                materials,
+                itemData,
+                deltas,
+                session.playerId(),
+                session.playerName(),
+                System.currentTimeMillis()
+        ));
+        metrics.loggedContainer.add(materials.length);
     }
 
     @Override
     public void onEnable() {
         loadMessages();
-        setupDatabase();
-        setupHistoryBrush();
+        scheduling = new Scheduling(this);
+        if (scheduling.folia()) {
+            getLogger().info("Folia detected, using region schedulers");
+        }
+        tntTracker = new TntTracker(messages.getInt("tnt_tracking.max_entries", 10000));
+        historyCache = new HistoryCache(messages.getInt("cache.max_entries", 5000));
+        highlights = new HighlightManager(
+                this,
+                scheduling,
+                messages.getInt("highlight.duration_ticks", 60),
+                messages.getInt("highlight.max_per_player", 3),
+                messages.getInt("highlight.max_total", 64),
+                messages.getInt("highlight.pool_size", 16)
+        );
 
         cpApi = getCoreProtect();
         if (cpApi != null) {
             getLogger().info("CoreProtect знайдено! Використовуємо його базу даних.");
         } else {
-            getLogger().info("CoreProtect не знайдено. Використовуємо локальну базу даних SQLite.");
+            getLogger().info("CoreProtect не знайдено. Використовуємо локальну базу даних.");
         }
 
+        setupDatabase();
+        setupAutomation();
+        setupMetrics();
+        setupHistoryBrush();
+
         Bukkit.getPluginManager().registerEvents(this, this);
         getCommand("bl").setTabCompleter(this);
 
@@ -166,11 +291,29 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
         if (!command.getName().equalsIgnoreCase("bl")) return List.of();
 
         if (args.length == 1) {
-            return List.of("history", "reload", "maxlog");
+            return List.of("history", "near", "player", "reload", "maxlog", "rollback", "restore", "stats");
+        }
+
+        if (args[0].equalsIgnoreCase("player")) {
+            if (args.length == 2) return null;
+            if (args.length == 3) return List.of("1h", "1d", "7d", "all");
+            if (args.length == 4) return List.of("<page>");
         }
 
-        if (args.length >= 2 && args[0].equalsIgnoreCase("history")) {
-            return List.of("<x>", "<y>", "<z>");
+        if (args[0].equalsIgnoreCase("near")) {
+            if (args.length == 2) return List.of("<radius>");
+            if (args.length == 3) return List.of("30m", "1h", "1d");
+        }
+
+        if (args[0].equalsIgnoreCase("rollback") || args[0].equalsIgnoreCase("restore")) {
+            if (args.length == 2) return List.of("<radius>", "cancel");
+            if (args.length == 3) return List.of("30m", "2h", "1d", "7d");
+            if (args.length == 4) return null;
+        }
+
+        if (args[0].equalsIgnoreCase("history")) {
+            if (args.length >= 2 && args.length <= 4) return List.of("<x>", "<y>", "<z>");
+            if (args.length == 5) return Bukkit.getWorlds().stream().map(World::getName).toList();
         }
 
         if (args.length == 2 && args[0].equalsIgnoreCase("maxlog")) {
@@ -182,49 +325,60 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
 
     @Override
     public void onDisable() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
-        } catch (SQLException e) {
-            getLogger().log(Level.SEVERE, "DB close error", e);
+        if (highlights != null) {
+            highlights.shutdown();
+        }
+        if (rollbackJob != null) {
+            rollbackJob.cancel();
         }
-    }
-
-    protected String formatTimeAgo(String dbTime) {
-        try {
-            Instant eventTime = Timestamp.valueOf(dbTime).toInstant()
-                    .plus(Duration.ofHours(2));
-
-            Instant now = Instant.now();
 
-            long seconds = Duration.between(eventTime, now).getSeconds();
-            if (seconds < 60) return seconds + " s ago (UTS-2)";
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdown();
+            try {
+                if (!lookupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    lookupExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-            long minutes = seconds / 60;
-            if (minutes < 60) return minutes + " m ago (UTS-2)";
+        // Відкриті контейнери в режимі сесій - зберегти зміни до закриття бази
+        for (ContainerSession session : openContainers.values()) {
+            if (!session.diffing()) continue;
+            Player player = Bukkit.getPlayer(session.playerId());
+            if (player != null) {
+                flushSession(session, player.getOpenInventory().getTopInventory().getContents());
+            }
+        }
+        openContainers.clear();
 
-            long hours = minutes / 60;
-            if (hours < 24) return hours + " h ago (UTS-2)";
+        if (automation != null) {
+            automation.flush();
+        }
 
-            long days = hours / 24;
-            return days + " d ago (UTS-2)";
+        if (logWriter != null) {
+            getLogger().info("Flushing " + logWriter.queued() + " queued log entries...");
+            logWriter.shutdown();
+        }
 
-        } catch (Exception e) {
-            return dbTime;
+        if (storage != null) {
+            storage.close();
         }
     }
-    private String formatTimeAgoUnix(long timestamp) {
-        Instant eventTime = Instant.ofEpochSecond(timestamp);
-        Instant now = Instant.now();
-        long seconds = Duration.between(eventTime, now).getSeconds();
 
-        if (seconds < 60) return seconds + "s ago";
+    protected String formatTimeAgo(long epochMillis) {
+        long seconds = Math.max(0, (System.currentTimeMillis() - epochMillis) / 1000);
+        if (seconds < 60) return seconds + " s ago";
+
         long minutes = seconds / 60;
-        if (minutes < 60) return minutes + "m ago";
+        if (minutes < 60) return minutes + " m ago";
+
         long hours = minutes / 60;
-        if (hours < 24) return hours + "h ago";
-        return (hours / 24) + "d ago";
+        if (hours < 24) return hours + " h ago";
+
+        long days = hours / 24;
+        return days + " d ago";
     }
 
     private void loadMessages() {
@@ -233,10 +387,16 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
             saveResource("messages.yml", false);
         }
         messages = YamlConfiguration.loadConfiguration(file);
+        text = Messages.compile(messages, mm);
     }
 
     protected String msg(String path) {
-        return messages.getString(path, "Missing message: " + path);
+        return text.raw(path);
+    }
+
+    // Код дії з бази -> локалізований текст; старі записи вже містять MiniMessage
+    protected Component actionText(String code) {
+        return text.action(code);
     }
 
     // ===== DATABASE SETUP =====
@@ -244,45 +404,165 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
         try {
             if (!getDataFolder().exists()) getDataFolder().mkdirs();
 
-            File dbFile = new File(getDataFolder(), "logs.db");
-            connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
-
-            try (Statement st = connection.createStatement()) {
-
-                st.execute("""
-                    CREATE TABLE IF NOT EXISTS block_logs (
-                        id INTEGER PRIMARY KEY AUTOINCREMENT,
-                        world TEXT,
-                        x INT,
-                        y INT,
-                        z INT,
-                        action TEXT,
-                        block TEXT,
-                        player TEXT,
-                        time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-                    )
-                """);
-
-                st.execute("""
-                    CREATE TABLE IF NOT EXISTS container_logs (
-                        id INTEGER PRIMARY KEY AUTOINCREMENT,
-                        world TEXT,
-                        x INT,
-                        y INT,
-                        z INT,
-                        action TEXT,
-                        item TEXT,
-                        amount INT,
-                        player TEXT,
-                        time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-                    )
-                """);
+            storage = openStorage();
+            if (cpApi != null) {
+                storage = new CoreProtectStorage(
+                        cpApi,
+                        storage,
+                        metrics,
+                        (int) TimeUnit.DAYS.toSeconds(messages.getInt("coreprotect.lookup_days", 30)),
+                        messages.getInt("coreprotect.max_results", 50),
+                        TimeUnit.SECONDS.toMillis(messages.getLong("coreprotect.cache_seconds", 10L)),
+                        messages.getInt("coreprotect.cache_entries", 1000),
+                        messages.getInt("coreprotect.activity_max_rows", 10_000)
+                );
             }
-        } catch (SQLException e) {
+            getLogger().info("Storage: " + storage.name());
+
+            logWriter = new LogWriter(
+                    storage,
+                    getLogger(),
+                    messages.getInt("storage.batch_size", 500),
+                    messages.getLong("storage.flush_interval_ms", 1000L),
+                    messages.getInt("storage.queue_capacity", 100_000)
+            );
+            if (messages.getBoolean("storage.spill.enabled", true)) {
+                openSpillFile();
+            }
+            logWriter.onCommit(historyCache::committed);
+            logWriter.metrics(metrics);
+            logWriter.retention(
+                    TimeUnit.DAYS.toMillis(messages.getLong("retention.block_days", 365)),
+                    TimeUnit.DAYS.toMillis(messages.getLong("retention.container_days", 90))
+            );
+            logWriter.start();
+
+            // Видалення старих партицій: через хвилину після старту, далі щогодини
+            scheduling.asyncTimer(logWriter::requestPurge, 20L * 60, 20L * 60 * 60);
+
+            // По одному потоку на кожне з'єднання для читання
+            lookupExecutor = Executors.newFixedThreadPool(storage.readerCount(), r -> {
+                Thread thread = new Thread(r, "BlockLogger-Lookup");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } catch (SQLException | IOException e) {
             getLogger().log(Level.SEVERE, "Database init error", e);
         }
     }
 
+    // Без файлу переповнення логування працює далі, лише повна черга губить записи
+    private void openSpillFile() {
+        File file = new File(getDataFolder(), "spill.dat");
+        try {
+            logWriter.spill(new SpillFile(file.toPath(), messages.getLong("storage.spill.max_mb", 1024L) * 1024 * 1024));
+            scheduling.asyncTimer(logWriter::forceSpill, 20L, 20L);
+        } catch (IOException | RuntimeException e) {
+            getLogger().log(Level.SEVERE, "Spill file " + file + " cannot be opened, continuing without it", e);
+        }
+    }
+
+    // Сховище за storage.type: sqlite (файл у теці плагіна), journal (бінарні файли) або mysql (спільний сервер)
+    private StorageEngine openStorage() throws SQLException, IOException {
+        String type = messages.getString("storage.type", "sqlite");
+
+        if ("mysql".equalsIgnoreCase(type) || "mariadb".equalsIgnoreCase(type)) {
+            String properties = messages.getString("storage.mysql.properties", "");
+            String url = "jdbc:mysql://"
+                    + messages.getString("storage.mysql.host", "localhost") + ":"
+                    + messages.getInt("storage.mysql.port", 3306) + "/"
+                    + messages.getString("storage.mysql.database", "blocklogger")
+                    + (properties == null || properties.isBlank() ? "" : "?" + properties);
+
+            return new MysqlStorage(
+                    url,
+                    messages.getString("storage.mysql.user", "root"),
+                    messages.getString("storage.mysql.password", ""),
+                    messages.getString("storage.mysql.table_prefix", "bl_"),
+                    messages.getInt("storage.mysql.pool_size", 4),
+                    getLogger()
+            );
+        }
+
+        if ("journal".equalsIgnoreCase(type)) {
+            return new JournalStorage(
+                    new File(getDataFolder(), "journal").toPath(),
+                    messages.getInt("storage.journal.segment_mb", 64),
+                    messages.getInt("storage.read_connections", 2),
+                    getLogger()
+            );
+        }
+
+        if (!"sqlite".equalsIgnoreCase(type)) {
+            getLogger().warning("Unknown storage.type '" + type + "', using sqlite");
+        }
+
+        Database database = new Database(new File(getDataFolder(), "logs.db"), getLogger());
+        database.open(
+                messages.getInt("storage.read_connections", 2),
+                messages.getInt("storage.partition_days", 7)
+        );
+        return new SqliteStorage(database, getLogger());
+    }
+
+    // ===== AUTOMATION =====
+    private void setupAutomation() {
+        automation = new AutomationLog(entry -> {
+            if (logWriter != null) submit(entry);
+        });
+        automation.configure(messages.getConfigurationSection("automation"));
+        // Вікно перевіряється щосекунди, тож нова тривалість після /bl reload діє одразу
+        scheduling.timer(automation::tick, 20L, 20L);
+    }
+
+    // ===== METRICS =====
+    private void setupMetrics() {
+        if (logWriter != null) {
+            metrics.gauge("blocklogger_queue_entries", "Log entries waiting for the writer", logWriter::queued);
+            metrics.gauge("blocklogger_queue_capacity", "Log entries the queue holds before spilling to disk", logWriter::capacity);
+            metrics.gauge("blocklogger_spill_entries", "Log entries waiting in the spill buffer or file", logWriter::spilled);
+            metrics.gauge("blocklogger_spill_bytes", "Spill file size", logWriter::spillBytes);
+            metrics.counter("blocklogger_spilled_entries_total", "Log entries that overflowed to the spill file", logWriter::spilledTotal);
+            metrics.counter("blocklogger_dropped_entries_total", "Log entries lost with both the queue and the spill file full", logWriter::dropped);
+        }
+        if (storage != null) {
+            metrics.gauge("blocklogger_database_bytes", "Database size, -1 if unknown", storage::sizeBytes);
+        }
+        metrics.counter("blocklogger_automation_events_total", "Automation events seen by enabled sources", automation::events);
+        metrics.counter("blocklogger_automation_sampled_out_total", "Automation events skipped by sampling", automation::sampledOut);
+        metrics.counter("blocklogger_automation_capped_total", "Automation events dropped by per-chunk caps", automation::capped);
+        metrics.counter("blocklogger_automation_rows_total", "Folded automation rows queued for writing", automation::rows);
+        metrics.gauge("blocklogger_cache_entries", "Blocks in the history cache", historyCache::size);
+        metrics.counter("blocklogger_cache_hits_total", "History lookups served from the cache", historyCache::hits);
+        metrics.counter("blocklogger_cache_misses_total", "History lookups that read the database", historyCache::misses);
+        if (storage instanceof CoreProtectStorage coreProtect) {
+            metrics.counter("blocklogger_coreprotect_cache_hits_total", "CoreProtect block lookups served from parsed rows", coreProtect::hits);
+            metrics.counter("blocklogger_coreprotect_cache_misses_total", "CoreProtect block lookups that queried CoreProtect", coreProtect::misses);
+        }
+
+        String textfile = messages.getString("metrics.textfile", "");
+        if (textfile == null || textfile.isBlank()) return;
+
+        Path path = Path.of(textfile);
+        Path file = path.isAbsolute() ? path : getDataFolder().toPath().resolve(path);
+        long interval = Math.max(1L, messages.getLong("metrics.interval_seconds", 15L)) * 20L;
+
+        scheduling.asyncTimer(() -> writeMetricsFile(file), interval, interval);
+    }
+
+    private void writeMetricsFile(Path file) {
+        try {
+            metrics.writeTo(file);
+            metricsFileFailed = false;
+        } catch (IOException e) {
+            // Одне повідомлення на серію помилок, а не кожні кілька секунд
+            if (!metricsFileFailed) {
+                getLogger().log(Level.WARNING, "Metrics file write error: " + file, e);
+            }
+            metricsFileFailed = true;
+        }
+    }
+
     private void setupHistoryBrush() {
         historyBrush = new ItemStack(Material.BRUSH);
         ItemMeta meta = historyBrush.getItemMeta();
@@ -294,9 +574,12 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
         lore.add(mm.deserialize(messages.getString("history_brush_lore", "Check block history")));
         meta.lore(lore);
 
+        brushKey = new NamespacedKey(this, "history_brush");
+        meta.getPersistentDataContainer().set(brushKey, PersistentDataType.BOOLEAN, true);
+
         historyBrush.setItemMeta(meta);
 
-        NamespacedKey key = new NamespacedKey(this, "history_brush");
+        NamespacedKey key = brushKey;
         Bukkit.removeRecipe(key);
 
         ShapedRecipe recipe = new ShapedRecipe(key, historyBrush);
@@ -309,45 +592,26 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
 
     protected boolean isHistoryBrush(ItemStack item) {
         if (item == null || item.getType() != Material.BRUSH) return false;
+        if (item.getPersistentDataContainer().has(brushKey)) return true;
+
+        // Щітки, скрафчені до появи PDC-мітки: порівняння назви і одноразове позначення
         if (!item.hasItemMeta()) return false;
 
         ItemMeta meta = item.getItemMeta();
-        if (!meta.hasDisplayName()) return false;
+        if (!meta.hasDisplayName() || !meta.displayName().equals(c("history_brush_name"))) return false;
 
-        Component configName = mm.deserialize(messages.getString("history_brush_name"));
-        return meta.displayName().equals(configName);
+        meta.getPersistentDataContainer().set(brushKey, PersistentDataType.BOOLEAN, true);
+        item.setItemMeta(meta);
+        return true;
     }
 
     // ===== OUTPUT TYPE =====
     protected OutputType getOutputType() {
-        String type = messages.getString("output.type", "chatmessage").toLowerCase();
-        return switch (type) {
-            case "actionbar" -> OutputType.ACTIONBAR;
-            case "itemdescription" -> OutputType.ITEMDESCRIPTION;
-            case "combined" -> OutputType.COMBINED;
-            default -> OutputType.CHAT;
-        };
+        return text.outputType();
     }
 
-    public void highlightBlockGlowing(Block block) {
-        org.bukkit.entity.MagmaCube entity = block.getWorld().spawn(block.getLocation().add(0.5, 0, 0.5), org.bukkit.entity.MagmaCube.class, cube -> {
-            cube.setSize(2);
-            cube.setInvisible(true);
-            cube.setInvulnerable(true);
-            cube.setGravity(false);
-            cube.setAI(false);
-            cube.setSilent(true);
-            cube.setGlowing(true);
-        });
-        Scoreboard board = Bukkit.getScoreboardManager().getMainScoreboard();
-        Team team = board.getTeam("BL_Highlight");
-        if (team == null) {
-            team = board.registerNewTeam("BL_Highlight");
-            team.color(NamedTextColor.AQUA);
-        }
-        team.addEntry(entity.getUniqueId().toString());
-
-        Bukkit.getScheduler().runTaskLater(this, entity::remove, 60L);
+    public void highlightBlockGlowing(Player viewer, Block block) {
+        scheduling.runAt(block.getLocation(), () -> highlights.show(viewer, block));
     }
     // ===== HISTORY OUTPUT =====
     protected void outputHistory(Player player, ItemStack brush, List<Component> history) {
@@ -363,7 +627,7 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
         if (type == OutputType.CHAT || type == OutputType.COMBINED) {
             sendOutput(player, null, c("block_history_title"));
 
-            int limit = Math.min(chatMaxLogs, history.size());
+            int limit = Math.min(chatMaxLogs.getOrDefault(player.getUniqueId(), DEFAULT_CHAT_MAX_LOGS), history.size());
             for (int i = 0; i < limit; i++) {
                 player.sendMessage(history.get(i));
             }
@@ -387,104 +651,90 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
         }
     }
 
-    protected void logBlock(Block block, String action, String player) {
-        try (PreparedStatement ps = connection.prepareStatement("""
-        INSERT INTO block_logs (world, x, y, z, action, block, player)
-        VALUES (?, ?, ?, ?, ?, ?, ?)
-    """)) {
-            ps.setString(1, block.getWorld().getName());
-            ps.setInt(2, block.getX());
-            ps.setInt(3, block.getY());
-            ps.setInt(4, block.getZ());
-            ps.setString(5, action);
-            ps.setString(6, block.getType().name());
-            ps.setString(7, player);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            getLogger().log(Level.SEVERE, "Block log error", e);
-        }
+    // Запис у чергу + оновлення кешу історії
+    protected void submit(LogEntry entry) {
+        long seq = logWriter.submit(entry);
+        if (seq >= 0) historyCache.written(entry, seq);
     }
-    protected List<Component> getBlockHistory(Block block) {
+
+    protected void logBlock(Block block, LogAction action, @Nullable UUID playerId, String player) {
+        if (logWriter == null) return;
+
+        long start = System.nanoTime();
+        submit(new LogEntry.BlockEntry(
+                block.getWorld().getName(),
+                block.getX(),
+                block.getY(),
+                block.getZ(),
+                action,
+                block.getType().name(),
+                playerId,
+                player,
+                System.currentTimeMillis()
+        ));
+        metrics.loggedBlocks.increment();
+        metrics.logBlock.stop(start);
+    }
+    protected List<Component> getBlockHistory(String world, long pos) {
+        long start = System.nanoTime();
         List<Component> result = new ArrayList<>();
 
-        if (cpApi != null) {
-            List<String[]> lookup = cpApi.blockLookup(block, 0);
-
-            if (lookup != null) {
-                for (String[] data : lookup) {
-                    CoreProtectAPI.ParseResult parse = cpApi.parseResult(data);
-                    String user = parse.getPlayer();
-                    String type = parse.getType().name().toLowerCase().replace("_", " ");
-                    int actionId = parse.getActionId();
-
-                    String actionName;
-                    String extraInfo = "";
-
-                    if (actionId == 0) {
-                        if (user.startsWith("#")) {
-                            actionName = "<red>destroyed</red>";
-                            extraInfo = " by <yellow>" + user + "</yellow>";
-                            user = "Explosion";
-                        } else {
-                            actionName = "Broke";
-                        }
-                    } else if (actionId == 1) {
-                        actionName = "Place";
-                    } else {
-                        actionName = "Change";
-                    }
+        for (HistoryRow row : queryBlockRows(world, pos, 10)) {
+            result.add(actionText(row.action())
+                    .append(Component.text(" "))
+                    .append(Component.text(row.material(), NamedTextColor.WHITE))
+                    .append(c("by_player", "%player%", row.player()))
+                    .append(c("time_ago", "%time%", formatTimeAgo(row.time()))));
+        }
 
-                    long unixSeconds = Long.parseLong(data[0]);
-                    String timeAgo = formatTimeAgoUnix(unixSeconds);
+        metrics.blockHistory.stop(start);
+        return result;
+    }
 
-                    result.add(mm.deserialize(
-                            "<green>" + user + "</green> " + actionName + " <white>" + type + "</white>" +
-                                    extraInfo + " <gray>(" + timeAgo + ")</gray>"
-                    ));
-                }
-            }
-            return result;
-        }
+    protected List<HistoryRow> queryBlockRows(String world, long pos, int limit) {
+        try {
+            // Записи CoreProtect проходять повз чергу плагіна - кеш про них не знає
+            if (cpApi != null) return storage.blockHistory(world, pos, limit);
 
-        try (PreparedStatement ps = connection.prepareStatement("""
-            SELECT action, block, player, time
-            FROM block_logs
-            WHERE world=? AND x=? AND y=? AND z=?
-            ORDER BY id DESC
-            LIMIT 10
-        """)) {
-            ps.setString(1, block.getWorld().getName());
-            ps.setInt(2, block.getX());
-            ps.setInt(3, block.getY());
-            ps.setInt(4, block.getZ());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    result.add(mm.deserialize(
-                            rs.getString("action") +
-                                    " <white>" + rs.getString("block") + "</white>" +
-                                    messages.getString("by_player").replace("%player%", rs.getString("player")) +
-                                    messages.getString("time_ago").replace("%time%", formatTimeAgo(rs.getString("time")))
-                    ));
-                }
-            }
+            HistoryCache.Key key = new HistoryCache.Key(world, pos, false);
+            List<HistoryRow> cached = historyCache.get(key, limit);
+            if (cached != null) return cached;
+            long committed = logWriter.committed();
+
+            List<HistoryRow> result = storage.blockHistory(world, pos, limit);
+            historyCache.put(key, result, limit, committed);
+            return result;
         } catch (SQLException e) {
             getLogger().log(Level.SEVERE, "History read error", e);
+            return List.of();
         }
-
-        return result;
     }
 
     @EventHandler
     public void onBlockPlace(BlockPlaceEvent e) {
+        Block placed = e.getBlockPlaced();
+        if (placed.getType() == Material.TNT) {
+            tntTracker.placed(
+                    placed.getWorld().getName(),
+                    PackedPos.pack(placed.getX(), placed.getY(), placed.getZ()),
+                    e.getPlayer().getUniqueId(),
+                    e.getPlayer().getName()
+            );
+        }
+
         if (cpApi != null) return;
-        logBlock(e.getBlockPlaced(), msg("log_block_place"), e.getPlayer().getName());
+        logBlock(e.getBlockPlaced(), LogAction.PLACE, e.getPlayer().getUniqueId(), e.getPlayer().getName());
     }
 
     @EventHandler
     public void onBlockBreak(BlockBreakEvent e) {
+        Block broken = e.getBlock();
+        if (broken.getType() == Material.TNT) {
+            tntTracker.removed(broken.getWorld().getName(), PackedPos.pack(broken.getX(), broken.getY(), broken.getZ()));
+        }
+
         if (cpApi != null) return;
-        logBlock(e.getBlock(), msg("log_block_break"), e.getPlayer().getName());
+        logBlock(e.getBlock(), LogAction.BREAK, e.getPlayer().getUniqueId(), e.getPlayer().getName());
     }
 
     @Nullable
@@ -492,17 +742,16 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
 
         if (inventory == null) return null;
 
-        InventoryHolder holder = inventory.getHolder();
+        InventoryHolder holder = inventory.getHolder(false);
 
         if (holder instanceof Container container) {
             return container.getBlock();
         }
 
-        if (holder instanceof DoubleChest doubleChest) {
-            InventoryHolder left = doubleChest.getLeftSide();
-            if (left instanceof Container container) {
-                return container.getBlock();
-            }
+        // Подвійна скриня логується на лівій половині; getLocation() - її середина, а не блок
+        if (holder instanceof DoubleChest doubleChest
+                && doubleChest.getLeftSide() instanceof Container left) {
+            return left.getBlock();
         }
 
         return null;
@@ -510,142 +759,475 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
 
 
 
+    // ===== AUTOMATION EVENTS =====
+    // Блокові джерела CoreProtect логує сам, як і дії гравців
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onHopperMove(InventoryMoveItemEvent e) {
+        if (!automation.sample(AutomationLog.Source.HOPPER)) return;
+
+        ItemStack item = e.getItem();
+        String actor = "#" + e.getInitiator().getType().name().toLowerCase();
+        // Лише справжні сховища: проміжні хопери ланцюжка не логуються
+        hopperSide(e.getSource(), LogAction.TAKE, item, actor);
+        hopperSide(e.getDestination(), LogAction.PUT, item, actor);
+    }
+
+    private void hopperSide(Inventory inventory, LogAction action, ItemStack item, String actor) {
+        InventoryType type = inventory.getType();
+        if (type == InventoryType.HOPPER || type == InventoryType.DROPPER || type == InventoryType.DISPENSER) return;
+
+        Block block = getContainerBlock(inventory);
+        if (block == null) return;
+
+        automation.record(AutomationLog.Source.HOPPER, block.getWorld().getName(), block.getX(), block.getY(), block.getZ(),
+                action, item.getType().name(), item.getAmount(), actor);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent e) {
+        pistonMoved(e.getBlocks(), e.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent e) {
+        pistonMoved(e.getBlocks(), e.getDirection());
+    }
+
+    // Напрямок події - напрямок руху блоків, і для втягування теж
+    private void pistonMoved(List<Block> blocks, BlockFace direction) {
+        if (cpApi != null || blocks.isEmpty() || !automation.sample(AutomationLog.Source.PISTON)) return;
+
+        String world = blocks.get(0).getWorld().getName();
+        for (Block block : blocks) {
+            String material = block.getType().name();
+            automation.record(AutomationLog.Source.PISTON, world, block.getX(), block.getY(), block.getZ(),
+                    LogAction.BREAK, material, 0, "#piston");
+            automation.record(AutomationLog.Source.PISTON, world,
+                    block.getX() + direction.getModX(), block.getY() + direction.getModY(), block.getZ() + direction.getModZ(),
+                    LogAction.PLACE, material, 0, "#piston");
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFluidFlow(BlockFromToEvent e) {
+        if (cpApi != null) return;
+
+        // Подія також для телепорту яйця дракона
+        Material fluid = e.getBlock().getType();
+        if (fluid != Material.WATER && fluid != Material.LAVA) return;
+
+        Block to = e.getToBlock();
+        Material replaced = to.getType();
+        if (replaced == fluid || !automation.sample(AutomationLog.Source.FLUID)) return;
+
+        String world = to.getWorld().getName();
+        String actor = fluid == Material.LAVA ? "#lava" : "#water";
+        if (!replaced.isAir()) {
+            automation.record(AutomationLog.Source.FLUID, world, to.getX(), to.getY(), to.getZ(),
+                    LogAction.BREAK, replaced.name(), 0, actor);
+        }
+        automation.record(AutomationLog.Source.FLUID, world, to.getX(), to.getY(), to.getZ(),
+                LogAction.PLACE, fluid.name(), 0, actor);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent e) {
+        if (cpApi != null || !automation.sample(AutomationLog.Source.FIRE)) return;
+
+        Block block = e.getBlock();
+        automation.record(AutomationLog.Source.FIRE, block.getWorld().getName(), block.getX(), block.getY(), block.getZ(),
+                LogAction.BREAK, block.getType().name(), 0, "#fire");
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFireSpread(BlockSpreadEvent e) {
+        if (cpApi != null) return;
+
+        Material spread = e.getNewState().getType();
+        if ((spread != Material.FIRE && spread != Material.SOUL_FIRE) || !automation.sample(AutomationLog.Source.FIRE)) return;
+
+        Block block = e.getBlock();
+        automation.record(AutomationLog.Source.FIRE, block.getWorld().getName(), block.getX(), block.getY(), block.getZ(),
+                LogAction.PLACE, spread.name(), 0, "#fire");
+    }
+
     @EventHandler
     public void onExplode(EntityExplodeEvent e) {
+        if (e.blockList().isEmpty()) return;
+
         String source = (e.getEntity() != null) ? "#" + e.getEntity().getType().name().toLowerCase() : "#explosion";
+        UUID sourceId = null;
 
-        if (e.getEntityType() == org.bukkit.entity.EntityType.TNT && cpApi != null) {
-            List<String[]> lookup = cpApi.blockLookup(e.getLocation().getBlock(), 0);
-            if (lookup != null && !lookup.isEmpty()) {
-                for (String[] data : lookup) {
-                    CoreProtectAPI.ParseResult parse = cpApi.parseResult(data);
-                    if (parse.getActionId() == 1) {
-                        source = parse.getPlayer();
-                        break;
-                    }
-                }
+        if (e.getEntityType() == EntityType.TNT) {
+            TntTracker.Attribution attribution = tntTracker.exploded(e.getEntity().getUniqueId());
+            if (attribution != null) {
+                source = attribution.name();
+                sourceId = attribution.playerId();
             }
         }
 
-        for (Block block : e.blockList()) {
-            logBlock(
-                    block,
-                    "Blown up",
-                    source
-            );
+        logExplosion(e.getLocation().getWorld().getName(), e.blockList(), sourceId, source);
+    }
+
+    // Хто поставив TNT - з пам'яті, без пошуку в історії блоку
+    @EventHandler
+    public void onTntSpawn(EntitySpawnEvent e) {
+        if (!(e.getEntity() instanceof TNTPrimed tnt)) return;
+
+        Block block = e.getLocation().getBlock();
+        TntTracker.Attribution igniter = null;
+        UUID parent = null;
+
+        if (tnt.getSource() instanceof Player player) {
+            igniter = new TntTracker.Attribution(player.getUniqueId(), player.getName());
+        } else if (tnt.getSource() instanceof TNTPrimed other) {
+            parent = other.getUniqueId();
         }
+
+        tntTracker.primed(
+                tnt.getUniqueId(),
+                block.getWorld().getName(),
+                PackedPos.pack(block.getX(), block.getY(), block.getZ()),
+                igniter,
+                parent
+        );
     }
 
-    protected void logContainer(Block block, String action, String item, int amount, String player) {
-        try (PreparedStatement ps = connection.prepareStatement("""
-        INSERT INTO container_logs (world, x, y, z, action, item, amount, player)
-        VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-    """)) {
-            ps.setString(1, block.getWorld().getName());
-            ps.setInt(2, block.getX());
-            ps.setInt(3, block.getY());
-            ps.setInt(4, block.getZ());
-            ps.setString(5, action);
-            ps.setString(6, item);
-            ps.setInt(7, amount);
-            ps.setString(8, player);
-            ps.executeUpdate();
+    protected void logExplosion(String world, List<Block> blocks, @Nullable UUID sourceId, String source) {
+        if (logWriter == null) return;
+
+        long start = System.nanoTime();
+        long[] positions = new long[blocks.size()];
+        String[] materials = new String[blocks.size()];
+        for (int i = 0; i < positions.length; i++) {
+            Block block = blocks.get(i);
+            positions[i] = PackedPos.pack(block.getX(), block.getY(), block.getZ());
+            materials[i] = block.getType().name();
+        }
+
+        submit(new LogEntry.ExplosionEntry(
+                world,
+                positions,
+                materials,
+                sourceId,
+                source,
+                System.currentTimeMillis()
+        ));
+        metrics.loggedExplosion.add(positions.length);
+        metrics.logExplosion.stop(start);
+    }
+
+    protected void logContainer(Block block, LogAction action, ItemStack item, Player player) {
+        if (logWriter == null) return;
+
+        long start = System.nanoTime();
+        submit(new LogEntry.ContainerEntry(
+                block.getWorld().getName(),
+                block.getX(),
+                block.getY(),
+                block.getZ(),
+                action,
+                item.getType().name(),
+                ItemSnapshot.of(item),
+                item.getAmount(),
+                player.getUniqueId(),
+                player.getName(),
+                System.currentTimeMillis()
+        ));
+        metrics.loggedContainer.increment();
+        metrics.logContainer.stop(start);
+    }
+
+    /**
+     * Block rows in a square around (cx, cz), full height, newer than {@code since}.
+     *
+     * @param target player name, or null for everyone
+     */
+    protected List<RollbackJob.Row> queryRollbackRows(String world, int cx, int cz, int radius, long since, @Nullable String target, int limit) {
+        try {
+            return storage.rollbackRows(world, cx, cz, radius, since, target, limit);
         } catch (SQLException e) {
-            getLogger().severe("Container log error");
-            e.printStackTrace();
+            getLogger().log(Level.SEVERE, "Rollback read error", e);
+            return List.of();
         }
     }
 
-    protected List<Component> getContainerHistory(Block block) {
-        List<Component> result = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement("""
-            SELECT action, item, amount, player, time
-            FROM container_logs
-            WHERE world=? AND x=? AND y=? AND z=?
-            ORDER BY id DESC
-            LIMIT 10
-            """)) {
-
-            ps.setString(1, block.getWorld().getName());
-            ps.setInt(2, block.getX());
-            ps.setInt(3, block.getY());
-            ps.setInt(4, block.getZ());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    result.add(
-                            mm.deserialize(
-                                    rs.getString("action") +
-                                            " <white>x" + rs.getInt("amount") + " " + rs.getString("item") + "</white>" +
-                                            " <green>" + rs.getString("player") + "</green>" +
-                                            " <gray>⏰ " + formatTimeAgo(rs.getString("time")) + "</gray>"
-                            )
+    /**
+     * Changes in a square around (cx, cz) newer than {@code since}, summed per player, action and material,
+     * largest first.
+     */
+    protected List<AreaRow> queryArea(String world, int cx, int cz, int radius, long since) {
+        List<AreaRow> rows = new ArrayList<>();
+        try {
+            for (Partitions.Kind kind : Partitions.Kind.values()) {
+                rows.addAll(storage.area(kind, world, cx, cz, radius, since));
+            }
+        } catch (SQLException e) {
+            getLogger().log(Level.SEVERE, "Area lookup error", e);
+            return List.of();
+        }
+        // Той самий гравець/дія/матеріал з блоків і контейнерів
+        return AreaRow.sum(rows);
+    }
+
+    /**
+     * @return duration like {@code 30m}, {@code 2h}, {@code 7d} in millis, or -1 if invalid
+     */
+    protected long parseDuration(String value) {
+        if (value.length() < 2) return -1;
+
+        long amount;
+        try {
+            amount = Long.parseLong(value.substring(0, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (amount <= 0) return -1;
+
+        return switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+            case 's' -> TimeUnit.SECONDS.toMillis(amount);
+            case 'm' -> TimeUnit.MINUTES.toMillis(amount);
+            case 'h' -> TimeUnit.HOURS.toMillis(amount);
+            case 'd' -> TimeUnit.DAYS.toMillis(amount);
+            case 'w' -> TimeUnit.DAYS.toMillis(amount * 7);
+            default -> -1;
+        };
+    }
+
+    private void startRollback(Player player, RollbackJob.Mode mode, int radius, long window, @Nullable String target) {
+        World world = player.getWorld();
+        String worldName = world.getName();
+        int cx = player.getLocation().getBlockX();
+        int cz = player.getLocation().getBlockZ();
+        long since = System.currentTimeMillis() - window;
+        int maxBlocks = messages.getInt("rollback.max_blocks", 500000);
+        UUID operatorId = player.getUniqueId();
+        String modeKey = mode == RollbackJob.Mode.ROLLBACK ? "rollback" : "restore";
+
+        sendOutput(player, null, c("rollback_searching"));
+
+        lookupAsync(
+                player,
+                () -> {
+                    // Рядки від новіших: обрізаний результат втратив би найстаріші, а саме вони потрібні плану
+                    List<RollbackJob.Row> rows = queryRollbackRows(worldName, cx, cz, radius, since, target, maxBlocks + 1);
+                    return rows.size() > maxBlocks ? null : RollbackJob.plan(mode, rows);
+                },
+                changes -> {
+                    Player operator = Bukkit.getPlayer(operatorId);
+
+                    if (changes == null) {
+                        if (operator != null) {
+                            sendOutput(operator, null, c("rollback_too_many", "%max%", String.valueOf(maxBlocks)));
+                        }
+                        return;
+                    }
+                    if (changes.isEmpty()) {
+                        if (operator != null) sendOutput(operator, null, c("no_records"));
+                        return;
+                    }
+
+                    RollbackJob next = new RollbackJob(
+                            scheduling,
+                            world,
+                            changes,
+                            messages.getInt("rollback.max_blocks_per_tick", 2000),
+                            messages.getLong("rollback.max_ms_per_tick", 10L),
+                            job -> {
+                                Player p = Bukkit.getPlayer(operatorId);
+                                if (p == null) return;
+                                p.sendActionBar(c("rollback_progress",
+                                        "%done%", String.valueOf(job.processed()),
+                                        "%total%", String.valueOf(job.total())));
+                            },
+                            job -> {
+                                Player p = Bukkit.getPlayer(operatorId);
+                                if (p == null) return;
+                                p.sendMessage(c("rollback_done",
+                                        "%mode%", modeKey,
+                                        "%changed%", String.valueOf(job.changed()),
+                                        "%total%", String.valueOf(job.total()),
+                                        "%seconds%", String.format("%.1f", job.elapsedMillis() / 1000.0)));
+                            }
                     );
-                }
+                    // Два запити можуть завершитись одночасно в різних потоках
+                    synchronized (this) {
+                        if (rollbackJob != null && !rollbackJob.done()) {
+                            if (operator != null) sendOutput(operator, null, c("rollback_busy"));
+                            return;
+                        }
+                        rollbackJob = next;
+                    }
+                    next.start();
+
+                    if (operator != null) {
+                        operator.sendMessage(c("rollback_started",
+                                "%mode%", modeKey,
+                                "%total%", String.valueOf(changes.size())));
+                    }
+                });
+    }
+
+    protected List<HistoryRow> queryContainerRows(String world, long pos, int limit) {
+        HistoryCache.Key key = new HistoryCache.Key(world, pos, true);
+        List<HistoryRow> cached = historyCache.get(key, limit);
+        if (cached != null) return cached;
+        long committed = logWriter.committed();
+
+        try {
+            List<HistoryRow> result = new ArrayList<>();
+            for (StorageEngine.Keyed<HistoryRow> keyed : storage.containerHistory(world, pos, StorageEngine.Cursor.START, limit)) {
+                result.add(keyed.row());
             }
+            historyCache.put(key, result, limit, committed);
+            return result;
         } catch (SQLException e) {
             getLogger().log(Level.SEVERE, "Container history read error", e);
+            return List.of();
+        }
+    }
+
+    protected List<Component> getContainerHistory(String world, long pos) {
+        long start = System.nanoTime();
+        List<Component> result = new ArrayList<>();
+        for (HistoryRow row : queryContainerRows(world, pos, 10)) {
+            result.add(actionText(row.action())
+                    .append(Component.text(" "))
+                    .append(Component.text("x" + row.amount() + " " + row.material(), NamedTextColor.WHITE))
+                    .append(Component.text(" "))
+                    .append(Component.text(row.player(), NamedTextColor.GREEN))
+                    .append(Component.text(" ⏰ " + formatTimeAgo(row.time()), NamedTextColor.GRAY)));
         }
+        metrics.containerHistory.stop(start);
         return result;
     }
 
-    public void openContainerHistoryGUI(Player player, Block block) {
+    public void openContainerHistoryGUI(Player player, HistoryGuiHolder holder, ContainerPager.Page page) {
+        long start = System.nanoTime();
 
         Component title = c("container_history_title");
-        Inventory gui = Bukkit.createInventory(null, 54, title);
-
-        try (PreparedStatement ps = connection.prepareStatement("""
-            SELECT action, item, amount, player, time
-            FROM container_logs
-            WHERE world=? AND x=? AND y=? AND z=?
-            ORDER BY id DESC LIMIT 54
-            """)) {
-
-            ps.setString(1, block.getWorld().getName());
-            ps.setInt(2, block.getX());
-            ps.setInt(3, block.getY());
-            ps.setInt(4, block.getZ());
-
-            try (ResultSet rs = ps.executeQuery()) {
-                int slot = 0;
-                while (rs.next() && slot < 54) {
-                    String actionStr = rs.getString("action");
-                    String itemName = rs.getString("item");
-                    int amount = rs.getInt("amount");
-                    String playerName = rs.getString("player");
-                    String timeAgo = formatTimeAgo(rs.getString("time"));
-
-                    Material mat = Material.matchMaterial(itemName);
-                    if (mat == null || !mat.isItem()) mat = Material.PAPER;
-
-                    ItemStack logItem = new ItemStack(mat);
-                    ItemMeta meta = logItem.getItemMeta();
-
-                    meta.displayName(mm.deserialize(actionStr + ": <white>" + itemName + "</white>"));
-
-                    List<Component> lore = new ArrayList<>();
-                    lore.add(mm.deserialize("<gray>Count: <white>" + amount + "</white>"));
-                    lore.add(mm.deserialize("<gray>By: </gray>").append(mm.deserialize(messages.getString("by_player", "%player%").replace("%player%", playerName))));
-                    lore.add(mm.deserialize(messages.getString("time_ago", " %time%").replace("%time%", timeAgo)));
-
-                    meta.lore(lore);
-                    logItem.setItemMeta(meta);
-                    gui.setItem(slot, logItem);
-                    slot++;
-                }
-            }
+        Inventory gui = Bukkit.createInventory(holder, 54, title);
+        holder.setInventory(gui);
+
+        renderHistoryPage(holder, page);
+        player.openInventory(gui);
+        metrics.guiOpen.stop(start);
+    }
+
+    // Предмети створюються лише для видимої сторінки
+    private void renderHistoryPage(HistoryGuiHolder holder, ContainerPager.Page page) {
+        Inventory gui = holder.getInventory();
+        gui.clear();
+        holder.page(page.index());
+
+        int slot = 0;
+        for (HistoryRow row : page.rows()) {
+            gui.setItem(slot++, historyItem(row));
+        }
+
+        if (page.index() > 0) {
+            gui.setItem(HistoryGuiHolder.PREVIOUS_SLOT, navigationItem(Material.ARROW, c("gui_previous")));
+        }
+        gui.setItem(HistoryGuiHolder.PAGE_SLOT, navigationItem(Material.PAPER,
+                c("gui_page", "%page%", String.valueOf(page.index() + 1))));
+        if (page.hasMore()) {
+            gui.setItem(HistoryGuiHolder.NEXT_SLOT, navigationItem(Material.ARROW, c("gui_next")));
+        }
+    }
+
+    private ItemStack historyItem(HistoryRow row) {
+        Component actionStr = actionText(row.action());
+        String itemName = row.material();
+        String timeAgo = formatTimeAgo(row.time());
+
+        // Справжній предмет зі знімка: зачарування, вміст шалкера і т.д. видно в підказці
+        ItemStack logItem = row.itemData() != null ? ItemSnapshot.restore(row.itemData()) : null;
+        if (logItem == null) {
+            Material mat = Material.matchMaterial(itemName);
+            if (mat == null || !mat.isItem()) mat = Material.PAPER;
+            logItem = new ItemStack(mat);
+        }
+        ItemMeta meta = logItem.getItemMeta();
+
+        // Власна назва предмета замість назви матеріалу, його опис - над рядками журналу
+        Component name = meta.hasDisplayName() ? meta.displayName() : Component.text(itemName, NamedTextColor.WHITE);
+        List<Component> lore = meta.hasLore() ? new ArrayList<>(meta.lore()) : new ArrayList<>();
+
+        meta.displayName(actionStr
+                .append(Component.text(": "))
+                .append(name));
+
+        lore.add(Component.text("Count: ", NamedTextColor.GRAY)
+                .append(Component.text(row.amount(), NamedTextColor.WHITE)));
+        lore.add(Component.text("By: ", NamedTextColor.GRAY).append(c("by_player", "%player%", row.player())));
+        lore.add(c("time_ago", "%time%", timeAgo));
+
+        meta.lore(lore);
+        logItem.setItemMeta(meta);
+        return logItem;
+    }
+
+    private ItemStack navigationItem(Material material, Component name) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        meta.displayName(name);
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    private ContainerPager.Page loadHistoryPage(ContainerPager pager, int index) {
+        long start = System.nanoTime();
+        try {
+            return pager.load(index);
         } catch (SQLException e) {
-            getLogger().severe("GUI error: " + e.getMessage());
+            getLogger().log(Level.SEVERE, "Container history read error", e);
+            return null;
+        } finally {
+            metrics.containerPage.stop(start);
         }
+    }
 
-        player.openInventory(gui);
+    private void showHistoryPage(Player player, HistoryGuiHolder holder, int index) {
+        ContainerPager.Page cached = holder.pager().cached(index);
+        if (cached != null) {
+            renderHistoryPage(holder, cached);
+            return;
+        }
+        if (holder.loading()) return;
+
+        holder.loading(true);
+        lookupAsync(player, () -> loadHistoryPage(holder.pager(), index), page -> {
+            holder.loading(false);
+            if (page == null) return;
+            // Гравець міг закрити GUI, поки сторінка читалась
+            if (player.getOpenInventory().getTopInventory().getHolder(false) != holder) return;
+            renderHistoryPage(holder, page);
+        }, () -> holder.loading(false));
     }
 
     @EventHandler
     public void onGUIClick(InventoryClickEvent e) {
         if (e.getClickedInventory() == null) return;
+        if (!(e.getView().getTopInventory().getHolder(false) instanceof HistoryGuiHolder holder)) return;
+
+        e.setCancelled(true);
+        if (!(e.getWhoClicked() instanceof Player player)) return;
+
+        int slot = e.getRawSlot();
+        if (slot == HistoryGuiHolder.NEXT_SLOT) {
+            ContainerPager.Page current = holder.pager().cached(holder.page());
+            if (current != null && current.hasMore()) {
+                showHistoryPage(player, holder, holder.page() + 1);
+            }
+        } else if (slot == HistoryGuiHolder.PREVIOUS_SLOT && holder.page() > 0) {
+            showHistoryPage(player, holder, holder.page() - 1);
+        }
+    }
 
-        if (e.getView().title().equals(c("container_history_title"))) {
+    @EventHandler
+    public void onGUIDrag(InventoryDragEvent e) {
+        if (e.getView().getTopInventory().getHolder(false) instanceof HistoryGuiHolder) {
             e.setCancelled(true);
         }
     }
@@ -654,29 +1236,32 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
     public void onContainerClick(InventoryClickEvent e) {
 
         if (!(e.getWhoClicked() instanceof Player player)) return;
+
+        // Контейнер уже відомий з onInventoryOpen - без пошуку власника інвентаря
+        ContainerSession session = openContainers.get(player.getUniqueId());
+        if (session == null || session.diffing()) return;
         if (e.getClickedInventory() == null) return;
 
         Inventory topInv = e.getView().getTopInventory();
-        Block block = getContainerBlock(topInv);
-
-        if (block == null) return;
+        Block block = session.block();
+        boolean clickedTop = e.getRawSlot() < topInv.getSize();
 
         switch (e.getAction()) {
 
             case PICKUP_ALL, PICKUP_HALF, PICKUP_ONE, PICKUP_SOME -> {
-                if (e.getClickedInventory().equals(topInv)) {
+                if (clickedTop) {
                     ItemStack item = e.getCurrentItem();
                     if (item != null && item.getType() != Material.AIR) {
-                        logContainer(block, msg("log_container_take"), item.getType().name(), item.getAmount(), player.getName());
+                        logContainer(block, LogAction.TAKE, item, player);
                     }
                 }
             }
 
             case PLACE_ALL, PLACE_ONE, PLACE_SOME, SWAP_WITH_CURSOR -> {
-                if (e.getClickedInventory().equals(topInv)) {
+                if (clickedTop) {
                     ItemStack cursor = e.getCursor();
                     if (cursor != null && cursor.getType() != Material.AIR) {
-                        logContainer(block, msg("log_container_put"), cursor.getType().name(), cursor.getAmount(), player.getName());
+                        logContainer(block, LogAction.PUT, cursor, player);
                     }
                 }
             }
@@ -685,11 +1270,11 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
             case MOVE_TO_OTHER_INVENTORY -> {
                 ItemStack item = e.getCurrentItem();
                 if (item != null && item.getType() != Material.AIR) {
-                    if (e.getClickedInventory().equals(topInv)) {
-                        logContainer(block, msg("log_container_take"), item.getType().name(), item.getAmount(), player.getName());
+                    if (clickedTop) {
+                        logContainer(block, LogAction.TAKE, item, player);
                     }
                     else {
-                        logContainer(block, msg("log_container_put"), item.getType().name(), item.getAmount(), player.getName());
+                        logContainer(block, LogAction.PUT, item, player);
                     }
                 }
             }
@@ -698,7 +1283,7 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
                 ItemStack cursor = e.getCursor();
                 if (cursor != null && cursor.getType() != Material.AIR) {
                     if (topInv.contains(cursor.getType())) {
-                        logContainer(block, msg("log_container_take") + " (Stack)", cursor.getType().name(), cursor.getAmount(), player.getName());
+                        logContainer(block, LogAction.TAKE_STACK, cursor, player);
                     }
                 }
             }
@@ -709,22 +1294,17 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
     public void onInventoryDrag(InventoryDragEvent e) {
         if (!(e.getWhoClicked() instanceof Player player)) return;
 
-        Block block = getContainerBlock(e.getView().getTopInventory());
-        if (block == null) return;
+        ContainerSession session = openContainers.get(player.getUniqueId());
+        if (session == null || session.diffing()) return;
 
+        Block block = session.block();
         int topInvSize = e.getView().getTopInventory().getSize();
 
         for (int slot : e.getRawSlots()) {
             if (slot < topInvSize) {
                 ItemStack itemAdded = e.getNewItems().get(slot);
                 if (itemAdded != null && itemAdded.getType() != Material.AIR) {
-                    logContainer(
-                            block,
-                            msg("log_container_put") + " (Drag)",
-                            itemAdded.getType().name(),
-                            itemAdded.getAmount(),
-                            player.getName()
-                    );
+                    logContainer(block, LogAction.PUT_DRAG, itemAdded, player);
                 }
             }
         }
@@ -732,90 +1312,132 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
 
 
     protected void highlightBlock(Block block, int durationTicks) {
-
-        Bukkit.getScheduler().runTaskTimer(this, new Runnable() {
-
-            int ticks = 0;
-
-            @Override
-            public void run() {
-                if (ticks >= durationTicks) {
-                    return;
-                }
-
-                block.getWorld().spawnParticle(
-                        Particle.END_ROD,
-                        block.getX() + 0.5,
-                        block.getY() + 1.1,
-                        block.getZ() + 0.5,
-                        10,
-                        0.3,
-                        0.3,
-                        0.3,
-                        0.01
-                );
-
-                ticks += 10;
-            }
-        }, 0L, 10L);
+        scheduling.runAt(block.getLocation(), () -> highlights.particles(block, durationTicks));
     }
 
 
     @EventHandler
     public void onBrushUse(PlayerInteractEvent e) {
         if (e.getAction() != Action.RIGHT_CLICK_BLOCK) return;
+        if (e.getHand() != EquipmentSlot.HAND) return;
         if (e.getClickedBlock() == null) return;
         if (!isHistoryBrush(e.getItem())) return;
 
         Player player = e.getPlayer();
         Block clicked = e.getClickedBlock();
 
-        if (clicked.getState() instanceof Container) {
+        // Один стан без копіювання замість кількох знімків блоку
+        BlockState state = clicked.getState(false);
+        if (state instanceof Container) {
             e.setCancelled(true);
         }
 
         player.playSound(player.getLocation(), Sound.ITEM_BRUSH_BRUSHING_GENERIC, 1.0f, 1.0f);
 
         Block targetBlock = clicked;
-        if (clicked.getState() instanceof org.bukkit.block.Chest chest) {
-            InventoryHolder holder = chest.getInventory().getHolder();
-            if (holder instanceof DoubleChest doubleChest) {
-                targetBlock = ((org.bukkit.block.Chest) doubleChest.getLeftSide()).getBlock();
-            }
+        if (state instanceof org.bukkit.block.Chest chest
+                && chest.getInventory().getHolder(false) instanceof DoubleChest doubleChest
+                && doubleChest.getLeftSide() instanceof Container left) {
+            targetBlock = left.getBlock();
         }
 
         final Block finalTarget = targetBlock;
         final ItemStack brush = e.getItem();
         final UUID playerUUID = player.getUniqueId();
+        // Ліва половина подвійної скрині - теж скриня; через 3 с блок може бути в чужому регіоні
+        final boolean container = state instanceof Container;
+        final String world = targetBlock.getWorld().getName();
+        final long pos = PackedPos.pack(targetBlock.getX(), targetBlock.getY(), targetBlock.getZ());
 
-        Bukkit.getScheduler().runTaskLater(this, () -> {
+        scheduling.runFor(player, () -> {
             Player p = Bukkit.getPlayer(playerUUID);
             if (p == null || !p.isOnline()) return;
 
             if (!isHistoryBrush(p.getInventory().getItemInMainHand())) return;
 
-            highlightBlockGlowing(finalTarget);
+            highlightBlockGlowing(p, finalTarget);
 
             p.playSound(p.getLocation(), Sound.ITEM_BRUSH_BRUSHING_GENERIC, 1.0f, 1.0f);
 
-            if (finalTarget.getState() instanceof Container) {
-                String mode = messages.getString("container_output_mode", "GUI");
-                if (mode.equalsIgnoreCase("GUI")) {
-                    openContainerHistoryGUI(p, finalTarget);
+            final int slot = p.getInventory().getHeldItemSlot();
+
+            if (container) {
+                if (text.containerGui()) {
+                    ContainerPager pager = new ContainerPager(storage, world, pos, HistoryGuiHolder.PAGE_SIZE);
+                    lookupAsync(p, () -> loadHistoryPage(pager, 0), page -> {
+                        Player viewer = activeBrushUser(playerUUID, slot);
+                        if (viewer == null || page == null) return;
+                        openContainerHistoryGUI(viewer, new HistoryGuiHolder(pager), page);
+                    });
                 } else {
-                    List<Component> history = getContainerHistory(finalTarget);
-                    outputHistory(p, brush, history);
+                    lookupAsync(p, () -> getContainerHistory(world, pos), history -> {
+                        Player viewer = activeBrushUser(playerUUID, slot);
+                        if (viewer == null) return;
+                        outputHistory(viewer, brush, history);
+                        viewer.updateInventory();
+                    });
                 }
             } else {
-                List<Component> history = getBlockHistory(finalTarget);
-                outputHistory(p, brush, history);
+                lookupAsync(p, () -> getBlockHistory(world, pos), history -> {
+                    Player viewer = activeBrushUser(playerUUID, slot);
+                    if (viewer == null) return;
+                    outputHistory(viewer, brush, history);
+                    viewer.updateInventory();
+                });
             }
-
-            p.updateInventory();
         }, 60L);
     }
 
 
+    // Гравець ще онлайн і тримає щітку в тому ж слоті, інакше результат запиту застарів
+    @Nullable
+    private Player activeBrushUser(UUID playerId, int slot) {
+        Player player = Bukkit.getPlayer(playerId);
+        if (player == null || !player.isOnline()) return null;
+        if (player.getInventory().getHeldItemSlot() != slot) return null;
+        if (!isHistoryBrush(player.getInventory().getItemInMainHand())) return null;
+        return player;
+    }
+
+    // ===== ASYNC LOOKUP =====
+    // Запит до бази виконується у фоні, результат повертається в потік гравця
+    protected <T> void lookupAsync(Player owner, Supplier<T> query, Consumer<T> callback) {
+        lookupAsync(owner, query, callback, () -> {
+        });
+    }
+
+    /**
+     * @param failed runs on the owner's thread instead of the callback when the query fails
+     *               or the executor is already shut down
+     */
+    protected <T> void lookupAsync(Player owner, Supplier<T> query, Consumer<T> callback, Runnable failed) {
+        if (lookupExecutor == null || lookupExecutor.isShutdown()) {
+            failed.run();
+            return;
+        }
+
+        try {
+            CompletableFuture.supplyAsync(query, lookupExecutor).whenComplete((result, error) -> {
+                if (error != null) {
+                    getLogger().log(Level.SEVERE, "History lookup error", error);
+                    if (isEnabled()) scheduling.runFor(owner, failed, 0L);
+                    return;
+                }
+                if (!isEnabled()) return;
+                scheduling.runFor(owner, () -> callback.accept(result), 0L);
+            });
+        } catch (RejectedExecutionException e) {
+            // Виконавця зупинили між перевіркою і запуском
+            failed.run();
+        }
+    }
+
+    private void sendNumbered(Player player, List<Component> lines) {
+        for (int i = 0; i < lines.size(); i++) {
+            player.sendMessage(Component.text((i + 1) + ". ").append(lines.get(i)));
+        }
+    }
+
     // ===== COMMAND PLACEHOLDER =====
     @Override
     public boolean onCommand(@NotNull CommandSender sender,
@@ -834,8 +1456,12 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
         }
 
         if (args.length == 0) {
-            player.sendMessage(ChatColor.YELLOW + "/bl history <x> <y> <z>");
+            player.sendMessage(ChatColor.YELLOW + "/bl history <x> <y> <z> [world]");
+            player.sendMessage(ChatColor.YELLOW + "/bl near <radius> <time>");
+            player.sendMessage(ChatColor.YELLOW + "/bl player <name> [time] [page]");
             player.sendMessage(ChatColor.YELLOW + "/bl reload");
+            player.sendMessage(ChatColor.YELLOW + "/bl rollback|restore <radius> <time> [player]");
+            player.sendMessage(ChatColor.YELLOW + "/bl stats");
             return true;
         }
 
@@ -848,6 +1474,7 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
             }
 
             loadMessages();
+            automation.configure(messages.getConfigurationSection("automation"));
             player.sendMessage(c("messages_reloaded"));
             return true;
         }
@@ -877,7 +1504,7 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
                 return true;
             }
 
-            chatMaxLogs = value;
+            chatMaxLogs.put(player.getUniqueId(), value);
 
             sendOutput(
                     player,
@@ -887,6 +1514,259 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
             return true;
         }
 
+        // ===== /bl stats =====
+        if (args[0].equalsIgnoreCase("stats")) {
+
+            if (!player.hasPermission(PERM_STATS)) {
+                sendOutput(player, null, c("no_permission"));
+                return true;
+            }
+
+            player.sendMessage(c("stats_header"));
+            if (logWriter != null && storage != null) {
+                long size = storage.sizeBytes();
+                player.sendMessage(c("stats_writer",
+                        "%queued%", String.valueOf(logWriter.queued()),
+                        "%written%", String.valueOf(metrics.entriesCommitted.get()),
+                        "%failed%", String.valueOf(metrics.entriesFailed.get()),
+                        "%storage%", storage.name(),
+                        "%size%", size < 0 ? "-" : String.format("%.1f MB", size / 1048576.0)));
+                player.sendMessage(c("stats_spill",
+                        "%entries%", String.valueOf(logWriter.spilled()),
+                        "%size%", String.format("%.1f MB", logWriter.spillBytes() / 1048576.0),
+                        "%total%", String.valueOf(logWriter.spilledTotal()),
+                        "%dropped%", String.valueOf(logWriter.dropped())));
+            }
+
+            long hits = historyCache.hits();
+            long lookups = hits + historyCache.misses();
+            player.sendMessage(c("stats_cache",
+                    "%entries%", String.valueOf(historyCache.size()),
+                    "%rate%", lookups == 0 ? "-" : String.format("%.0f%%", hits * 100.0 / lookups)));
+
+            player.sendMessage(c("stats_automation",
+                    "%events%", String.valueOf(automation.events()),
+                    "%rows%", String.valueOf(automation.rows()),
+                    "%dropped%", String.valueOf(automation.sampledOut() + automation.capped())));
+
+            // Лише шляхи, які вже виконувались
+            for (Metrics.Timer timer : metrics.timers()) {
+                if (timer.count() == 0) continue;
+                player.sendMessage(c("stats_timer",
+                        "%name%", timer.name(),
+                        "%count%", String.valueOf(timer.count()),
+                        "%avg%", String.format("%.2f", timer.meanMillis()),
+                        "%p95%", String.format("%.2f", timer.quantileMillis(0.95)),
+                        "%max%", String.format("%.2f", timer.maxMillis())));
+            }
+            return true;
+        }
+
+        // ===== /bl near <radius> <time> =====
+        if (args[0].equalsIgnoreCase("near")) {
+
+            if (!player.hasPermission(PERM_HISTORY)) {
+                sendOutput(player, null, c("no_permission"));
+                return true;
+            }
+
+            if (args.length != 3) {
+                sendOutput(player, null, c("near_usage"));
+                return true;
+            }
+
+            int maxRadius = messages.getInt("near.max_radius", 64);
+            int radius;
+            try {
+                radius = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                sendOutput(player, null, c("near_usage"));
+                return true;
+            }
+            if (radius < 1 || radius > maxRadius) {
+                sendOutput(player, null, c("rollback_radius", "%max%", String.valueOf(maxRadius)));
+                return true;
+            }
+
+            long window = parseDuration(args[2]);
+            if (window <= 0) {
+                sendOutput(player, null, c("rollback_time"));
+                return true;
+            }
+
+            String world = player.getWorld().getName();
+            int cx = player.getLocation().getBlockX();
+            int cz = player.getLocation().getBlockZ();
+            long since = System.currentTimeMillis() - window;
+            int maxLines = messages.getInt("near.max_lines", 20);
+            UUID playerId = player.getUniqueId();
+
+            Component header = c("near_header", "%radius%", String.valueOf(radius), "%time%", args[2]);
+
+            lookupAsync(player, () -> queryArea(world, cx, cz, radius, since), rows -> {
+                Player p = Bukkit.getPlayer(playerId);
+                if (p == null || !p.isOnline()) return;
+
+                if (rows.isEmpty()) {
+                    sendOutput(p, null, c("no_records"));
+                    return;
+                }
+
+                p.sendMessage(header);
+                for (int i = 0; i < Math.min(maxLines, rows.size()); i++) {
+                    AreaRow row = rows.get(i);
+                    p.sendMessage(Component.text(row.player(), NamedTextColor.GREEN)
+                            .append(Component.text(" "))
+                            .append(actionText(row.action()))
+                            .append(Component.text(" " + row.material(), NamedTextColor.WHITE))
+                            .append(Component.text(" x" + row.total(), NamedTextColor.YELLOW)));
+                }
+                if (rows.size() > maxLines) {
+                    p.sendMessage(c("near_more", "%count%", String.valueOf(rows.size() - maxLines)));
+                }
+            });
+            return true;
+        }
+
+        // ===== /bl player <name> [time] [page] =====
+        if (args[0].equalsIgnoreCase("player")) {
+
+            if (!player.hasPermission(PERM_HISTORY)) {
+                sendOutput(player, null, c("no_permission"));
+                return true;
+            }
+
+            if (args.length < 2 || args.length > 4) {
+                sendOutput(player, null, c("activity_usage"));
+                return true;
+            }
+
+            String target = args[1];
+            String timeArg = "all";
+            String pageArg = "1";
+            if (args.length == 3) {
+                // Число без одиниці - це сторінка, час завжди з одиницею (7d)
+                if (args[2].chars().allMatch(Character::isDigit)) pageArg = args[2];
+                else timeArg = args[2];
+            } else if (args.length == 4) {
+                timeArg = args[2];
+                pageArg = args[3];
+            }
+
+            long since = Long.MIN_VALUE;
+            if (!timeArg.equalsIgnoreCase("all")) {
+                long window = parseDuration(timeArg);
+                if (window <= 0) {
+                    sendOutput(player, null, c("rollback_time"));
+                    return true;
+                }
+                since = System.currentTimeMillis() - window;
+            }
+
+            int page;
+            try {
+                page = Integer.parseInt(pageArg);
+            } catch (NumberFormatException e) {
+                sendOutput(player, null, c("activity_usage"));
+                return true;
+            }
+
+            UUID staffId = player.getUniqueId();
+            ActivityLookup lookup = activityLookups.get(staffId);
+            // Наступні сторінки того самого запиту - з тим самим початком вікна і відомими курсорами
+            if (lookup == null || !lookup.matches(target, timeArg)) {
+                lookup = new ActivityLookup(storage, target, timeArg, since, messages.getInt("activity.page_size", 10));
+                activityLookups.put(staffId, lookup);
+            }
+
+            final ActivityLookup activity = lookup;
+            final String time = timeArg;
+            lookupAsync(player, () -> {
+                try {
+                    return activity.page(page);
+                } catch (SQLException e) {
+                    getLogger().log(Level.SEVERE, "Player activity read error", e);
+                    return null;
+                }
+            }, result -> {
+                Player p = Bukkit.getPlayer(staffId);
+                if (p == null || !p.isOnline() || result == null) return;
+
+                if (result.rows().isEmpty()) {
+                    sendOutput(p, null, c("no_records"));
+                    return;
+                }
+
+                p.sendMessage(c("activity_header", "%player%", target, "%page%", String.valueOf(result.number())));
+                for (ActivityLookup.Row row : result.rows()) {
+                    String amount = row.amount() > 0 ? " x" + row.amount() : "";
+                    p.sendMessage(Component.text(formatTimeAgo(row.cursor().time()) + " ", NamedTextColor.GRAY)
+                            .append(actionText(row.action()))
+                            .append(Component.text(" " + row.material() + amount, NamedTextColor.WHITE))
+                            .append(Component.text(" " + row.world() + " "
+                                    + PackedPos.x(row.pos()) + " "
+                                    + PackedPos.y(row.pos()) + " "
+                                    + PackedPos.z(row.pos()), NamedTextColor.DARK_GRAY)));
+                }
+                if (result.hasMore()) {
+                    p.sendMessage(c("activity_next",
+                            "%command%", "/bl player " + target + " " + time + " " + (result.number() + 1)));
+                }
+            });
+            return true;
+        }
+
+        // ===== /bl rollback|restore <radius> <time> [player] =====
+        if (args[0].equalsIgnoreCase("rollback") || args[0].equalsIgnoreCase("restore")) {
+
+            if (!player.hasPermission(PERM_ROLLBACK)) {
+                sendOutput(player, null, c("no_permission"));
+                return true;
+            }
+
+            if (args.length == 2 && args[1].equalsIgnoreCase("cancel")) {
+                if (rollbackJob != null && !rollbackJob.done()) {
+                    rollbackJob.cancel();
+                } else {
+                    sendOutput(player, null, c("rollback_none"));
+                }
+                return true;
+            }
+
+            if (args.length < 3 || args.length > 4) {
+                sendOutput(player, null, c("rollback_usage"));
+                return true;
+            }
+
+            if (rollbackJob != null && !rollbackJob.done()) {
+                sendOutput(player, null, c("rollback_busy"));
+                return true;
+            }
+
+            int maxRadius = messages.getInt("rollback.max_radius", 100);
+            int radius;
+            try {
+                radius = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                sendOutput(player, null, c("rollback_usage"));
+                return true;
+            }
+            if (radius < 1 || radius > maxRadius) {
+                sendOutput(player, null, c("rollback_radius", "%max%", String.valueOf(maxRadius)));
+                return true;
+            }
+
+            long window = parseDuration(args[2]);
+            if (window <= 0) {
+                sendOutput(player, null, c("rollback_time"));
+                return true;
+            }
+
+            RollbackJob.Mode mode = args[0].equalsIgnoreCase("rollback") ? RollbackJob.Mode.ROLLBACK : RollbackJob.Mode.RESTORE;
+            startRollback(player, mode, radius, window, args.length == 4 ? args[3] : null);
+            return true;
+        }
+
         if (args[0].equalsIgnoreCase("history")) {
 
             if (!player.hasPermission(PERM_HISTORY)) {
@@ -894,8 +1774,8 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
                 return true;
             }
 
-            if (args.length != 4) {
-                player.sendMessage(ChatColor.RED + "Usage: /bl history <x> <y> <z>");
+            if (args.length < 4 || args.length > 5) {
+                player.sendMessage(ChatColor.RED + "Usage: /bl history <x> <y> <z> [world]");
                 return true;
             }
 
@@ -910,34 +1790,45 @@ public class BlockLogger extends JavaPlugin implements Listener, TabCompleter {
                 return true;
             }
 
-            Block block = player.getWorld().getBlockAt(x, y, z);
-
-            List<Component> history;
-
-            if (block.getState() instanceof Container) {
-                player.sendMessage(
-                        msg("container_history_command")
-                                .replace("%x%", String.valueOf(x))
-                                .replace("%y%", String.valueOf(y))
-                                .replace("%z%", String.valueOf(z))
-                );
-                history = getContainerHistory(block);
-            } else {
-                player.sendMessage(
-                        msg("block_history_command")
-                                .replace("%x%", String.valueOf(x))
-                                .replace("%y%", String.valueOf(y))
-                                .replace("%z%", String.valueOf(z))
-                );
-                history = getBlockHistory(block);
+            // Лише назва світу і координати: блок і чанк не чіпаються, відповідь - зі сховища
+            World target = args.length == 5 ? Bukkit.getWorld(args[4]) : player.getWorld();
+            if (target == null) {
+                player.sendMessage(c("unknown_world", "%world%", args[4]));
+                return true;
             }
-            if (history.isEmpty()) {
-                sendOutput(player, player.getInventory().getItemInMainHand(), c("no_records"));
-            } else {
-                for (int i = 0; i < history.size(); i++) {
-                    player.sendMessage((i + 1) + ". " + history.get(i));
+            // Назва як у записах, навіть якщо введена в іншому регістрі
+            String world = target.getName();
+            long pos = PackedPos.pack(x, y, z);
+            UUID playerId = player.getUniqueId();
+            String[] placeholders = {
+                    "%x%", String.valueOf(x),
+                    "%y%", String.valueOf(y),
+                    "%z%", String.valueOf(z),
+                    "%world%", world
+            };
+
+            // Чи це контейнер, видно з того, в якій таблиці є рядки - тому обидві історії
+            lookupAsync(player, () -> List.of(getBlockHistory(world, pos), getContainerHistory(world, pos)), histories -> {
+                Player p = Bukkit.getPlayer(playerId);
+                if (p == null || !p.isOnline()) return;
+
+                List<Component> blocks = histories.get(0);
+                List<Component> containers = histories.get(1);
+                if (blocks.isEmpty() && containers.isEmpty()) {
+                    p.sendMessage(c("block_history_command", placeholders));
+                    sendOutput(p, p.getInventory().getItemInMainHand(), c("no_records"));
+                    return;
                 }
-            }
+
+                if (!blocks.isEmpty()) {
+                    p.sendMessage(c("block_history_command", placeholders));
+                    sendNumbered(p, blocks);
+                }
+                if (!containers.isEmpty()) {
+                    p.sendMessage(c("container_history_command", placeholders));
+                    sendNumbered(p, containers);
+                }
+            });
             return true;
         }
         return true;
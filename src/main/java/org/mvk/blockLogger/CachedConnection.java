@@ -0,0 +1,58 @@
+package org.mvk.blockLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connection with a per-connection prepared statement cache.
+ * Not thread safe: used by one thread at a time (the writer or a borrowed reader).
+ * Cached statements must not be closed by callers, only their result sets.
+ * The cache is a small LRU, since partition tables come and go with their statements.
+ */
+public class CachedConnection implements AutoCloseable {
+
+    private static final int MAX_STATEMENTS = 64;
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= MAX_STATEMENTS) return false;
+            try {
+                eldest.getValue().close();
+            } catch (SQLException ignored) {
+                // Закриття запиту до вже видаленої таблиці
+            }
+            return true;
+        }
+    };
+
+    public CachedConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps == null) {
+            ps = connection.prepareStatement(sql);
+            statements.put(sql, ps);
+        }
+        return ps;
+    }
+
+    public Connection raw() {
+        return connection;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        for (PreparedStatement ps : statements.values()) {
+            ps.close();
+        }
+        statements.clear();
+        connection.close();
+    }
+}
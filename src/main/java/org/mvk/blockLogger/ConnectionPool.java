@@ -0,0 +1,106 @@
+package org.mvk.blockLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fixed set of read connections. A lookup borrows one, waiting if all are busy.
+ * For network databases connections are checked on borrow and reopened when the server
+ * has dropped them (restart, {@code wait_timeout}).
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Opener {
+        Connection open() throws SQLException;
+    }
+
+    private final Opener opener;
+    private final int validateTimeoutSeconds;
+    private final Logger logger;
+    private final List<CachedConnection> all = new ArrayList<>();
+    private final BlockingQueue<CachedConnection> idle;
+
+    /**
+     * @param validateTimeoutSeconds 0 to never check connections (local files)
+     */
+    public ConnectionPool(int size, Opener opener, int validateTimeoutSeconds, Logger logger) throws SQLException {
+        this.opener = opener;
+        this.validateTimeoutSeconds = validateTimeoutSeconds;
+        this.logger = logger;
+
+        int count = Math.max(1, size);
+        idle = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            CachedConnection connection = new CachedConnection(opener.open());
+            synchronized (all) {
+                all.add(connection);
+            }
+            idle.add(connection);
+        }
+    }
+
+    public int size() {
+        synchronized (all) {
+            return all.size();
+        }
+    }
+
+    /**
+     * Runs a query on a pooled connection, waiting for a free one if all are busy.
+     */
+    public <T> T read(Database.SqlFunction<CachedConnection, T> query) throws SQLException {
+        CachedConnection connection;
+        try {
+            connection = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+
+        try {
+            connection = checked(connection);
+            return query.apply(connection);
+        } finally {
+            idle.add(connection);
+        }
+    }
+
+    private CachedConnection checked(CachedConnection connection) throws SQLException {
+        if (validateTimeoutSeconds <= 0 || connection.raw().isValid(validateTimeoutSeconds)) return connection;
+
+        // Сервер закрив з'єднання - відкрити нове на його місце
+        CachedConnection fresh = new CachedConnection(opener.open());
+        synchronized (all) {
+            all.remove(connection);
+            all.add(fresh);
+        }
+        closeQuietly(connection);
+        return fresh;
+    }
+
+    @Override
+    public void close() {
+        synchronized (all) {
+            for (CachedConnection connection : all) {
+                closeQuietly(connection);
+            }
+            all.clear();
+        }
+        idle.clear();
+    }
+
+    private void closeQuietly(CachedConnection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "DB close error", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.mvk.blockLogger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Container history of one block, read page by page for the history GUI.
+ * Each page continues after the last row of the previous one (keyset pagination),
+ * and loaded pages are kept, so going back never queries again.
+ */
+public class ContainerPager {
+
+    public record Page(int index, List<HistoryRow> rows, boolean hasMore) {
+    }
+
+    private final StorageEngine storage;
+    private final String world;
+    private final long pos;
+    private final int pageSize;
+
+    private final List<Page> pages = new ArrayList<>();
+    // Курсор після останнього рядка кожної завантаженої сторінки
+    private final List<StorageEngine.Cursor> ends = new ArrayList<>();
+
+    public ContainerPager(StorageEngine storage, String world, long pos, int pageSize) {
+        this.storage = storage;
+        this.world = world;
+        this.pos = pos;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * @return the page if it is already loaded, otherwise null
+     */
+    public synchronized Page cached(int index) {
+        return index < pages.size() ? pages.get(index) : null;
+    }
+
+    /**
+     * Loads pages up to {@code index}; pages must be requested in order, as the GUI does.
+     */
+    public synchronized Page load(int index) throws SQLException {
+        while (pages.size() <= index) {
+            Page last = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+            if (last != null && !last.hasMore()) return last;
+            fetchNext();
+        }
+        return pages.get(index);
+    }
+
+    private void fetchNext() throws SQLException {
+        StorageEngine.Cursor after = ends.isEmpty() ? StorageEngine.Cursor.START : ends.get(ends.size() - 1);
+        List<StorageEngine.Keyed<HistoryRow>> keyed = storage.containerHistory(world, pos, after, pageSize + 1);
+
+        boolean hasMore = keyed.size() > pageSize;
+        if (hasMore) keyed = keyed.subList(0, pageSize);
+
+        List<HistoryRow> rows = new ArrayList<>(keyed.size());
+        for (StorageEngine.Keyed<HistoryRow> row : keyed) {
+            rows.add(row.row());
+        }
+
+        pages.add(new Page(pages.size(), rows, hasMore));
+        ends.add(keyed.isEmpty() ? after : keyed.get(keyed.size() - 1).cursor());
+    }
+}
@@ -0,0 +1,100 @@
+package org.mvk.blockLogger;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A player's open container. In session logging mode it keeps a per-item
+ * snapshot taken on open, and the net change is logged once on close.
+ * Items are told apart with their meta, so an enchanted sword and a plain one are separate rows.
+ * <p>
+ * While several players view the same container the change cannot be attributed,
+ * so the session is marked shared and falls back to per-click logging.
+ */
+public class ContainerSession {
+
+    private final Block block;
+    private final UUID playerId;
+    private final String playerName;
+
+    // Предмет у кількості 1 -> кількість у контейнері
+    @Nullable
+    private Map<ItemStack, Integer> snapshot;
+    private boolean shared;
+
+    public ContainerSession(Block block, UUID playerId, String playerName) {
+        this.block = block;
+        this.playerId = playerId;
+        this.playerName = playerName;
+    }
+
+    public Block block() {
+        return block;
+    }
+
+    public UUID playerId() {
+        return playerId;
+    }
+
+    public String playerName() {
+        return playerName;
+    }
+
+    public boolean shared() {
+        return shared;
+    }
+
+    /**
+     * @return true when clicks should not be logged because the close diff covers them
+     */
+    public boolean diffing() {
+        return snapshot != null && !shared;
+    }
+
+    public void snapshot(ItemStack[] contents) {
+        snapshot = count(contents);
+        shared = false;
+    }
+
+    public void share() {
+        shared = true;
+    }
+
+    /**
+     * Net per-item change since the last snapshot; the snapshot moves to {@code contents}.
+     * Keys are single items, positive values were put in, negative ones taken out.
+     */
+    public Map<ItemStack, Integer> diff(ItemStack[] contents) {
+        Map<ItemStack, Integer> now = count(contents);
+        Map<ItemStack, Integer> delta = new LinkedHashMap<>();
+        Map<ItemStack, Integer> before = snapshot != null ? snapshot : Map.of();
+
+        for (Map.Entry<ItemStack, Integer> entry : now.entrySet()) {
+            int change = entry.getValue() - before.getOrDefault(entry.getKey(), 0);
+            if (change != 0) delta.put(entry.getKey(), change);
+        }
+        for (Map.Entry<ItemStack, Integer> entry : before.entrySet()) {
+            if (!now.containsKey(entry.getKey())) delta.put(entry.getKey(), -entry.getValue());
+        }
+
+        snapshot = now;
+        return delta;
+    }
+
+    private static Map<ItemStack, Integer> count(ItemStack[] contents) {
+        Map<ItemStack, Integer> counts = new HashMap<>();
+        for (ItemStack item : contents) {
+            if (item == null || item.getType() == Material.AIR) continue;
+            // Однакові предмети з різною кількістю - один ключ
+            counts.merge(item.asOne(), item.getAmount(), Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,335 @@
+package org.mvk.blockLogger;
+
+import net.coreprotect.CoreProtectAPI;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Block history from CoreProtect, everything else from the plugin's own storage.
+ * CoreProtect logs block changes itself, so only what it does not cover the same way
+ * (container rows, attributed explosions) is written to {@code local}.
+ * <p>
+ * CoreProtect lookups are blocking database reads; like every lookup they run on the lookup executor.
+ * Block history is read for a limited time window, at most {@code maxResults} rows are parsed,
+ * and the parsed rows are kept for a few seconds, so repeated brushing of one block
+ * does not read its whole history again.
+ * <p>
+ * The API cannot read rows older than a given time, so player activity is read once for the
+ * same window, capped at {@code activityMaxRows} and kept for the same few seconds; each page
+ * then finds its cursor by binary search and parses only its own rows.
+ */
+public class CoreProtectStorage implements StorageEngine {
+
+    // Дії CoreProtect: 0 - зламано, 1 - поставлено
+    private static final List<Integer> BLOCK_ACTIONS = List.of(0, 1);
+
+    private record Key(String world, long pos) {
+    }
+
+    private record Cached(List<HistoryRow> rows, long expires) {
+    }
+
+    private record ActivityKey(String player, long since) {
+    }
+
+    private record CachedActivity(List<String[]> rows, long expires) {
+    }
+
+    // Гравці, чиї сторінки гортають зараз
+    private static final int ACTIVITY_CACHE = 16;
+
+    private final CoreProtectAPI api;
+    private final StorageEngine local;
+    private final Metrics metrics;
+    private final int windowSeconds;
+    private final int maxResults;
+    private final long cacheMillis;
+    private final int cacheEntries;
+    private final LinkedHashMap<Key, Cached> cache;
+    private final int activityMaxRows;
+    private final LinkedHashMap<ActivityKey, CachedActivity> activityCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ActivityKey, CachedActivity> eldest) {
+            return size() > ACTIVITY_CACHE;
+        }
+    };
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param windowSeconds   how far back block history and player activity are read, 0 for no limit
+     * @param maxResults      rows parsed per block lookup
+     * @param cacheMillis     how long rows of a block or a player's activity are reused, 0 to not cache
+     * @param activityMaxRows newest block rows of a player that activity pages can reach
+     */
+    public CoreProtectStorage(CoreProtectAPI api, StorageEngine local, Metrics metrics,
+                              int windowSeconds, int maxResults, long cacheMillis, int cacheEntries,
+                              int activityMaxRows) {
+        this.api = api;
+        this.local = local;
+        this.metrics = metrics;
+        this.windowSeconds = Math.max(0, windowSeconds);
+        this.maxResults = Math.max(1, maxResults);
+        this.cacheMillis = cacheMillis;
+        this.cacheEntries = Math.max(1, cacheEntries);
+        this.activityMaxRows = Math.max(1, activityMaxRows);
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                return size() > CoreProtectStorage.this.cacheEntries;
+            }
+        };
+    }
+
+    @Override
+    public String name() {
+        return "coreprotect+" + local.name();
+    }
+
+    // ===== WRITE =====
+
+    @Override
+    public boolean write(List<LogEntry> batch) {
+        return local.write(batch);
+    }
+
+    @Override
+    public void purge(Partitions.Kind kind, long before) throws SQLException {
+        local.purge(kind, before);
+    }
+
+    // ===== READ =====
+
+    /**
+     * Newest rows within the time window; {@code limit} above {@code maxResults} is capped.
+     */
+    @Override
+    public List<HistoryRow> blockHistory(String world, long pos, int limit) throws SQLException {
+        Key key = new Key(world, pos);
+        List<HistoryRow> rows = cached(key);
+
+        if (rows == null) {
+            World w = Bukkit.getWorld(world);
+            if (w == null) return List.of();
+
+            // Блок - лише світ і координати, чанк для пошуку не завантажується
+            long start = System.nanoTime();
+            List<String[]> lookup = api.blockLookup(w.getBlockAt(PackedPos.x(pos), PackedPos.y(pos), PackedPos.z(pos)), windowSeconds);
+            metrics.coreProtect.stop(start);
+
+            // Розбираються лише найновіші maxResults рядків, решта відповіді не чіпається
+            rows = new ArrayList<>();
+            if (lookup != null) {
+                for (int i = 0; i < lookup.size() && rows.size() < maxResults; i++) {
+                    CoreProtectAPI.ParseResult parse = api.parseResult(lookup.get(i));
+                    rows.add(new HistoryRow(actionCode(parse), parse.getType().name(), 0, parse.getPlayer(), parse.getTimestamp()));
+                }
+            }
+            rows = List.copyOf(rows);
+            cache(key, rows);
+        }
+
+        return rows.size() <= limit ? rows : rows.subList(0, limit);
+    }
+
+    private synchronized List<HistoryRow> cached(Key key) {
+        Cached cached = cache.get(key);
+        if (cached == null || cached.expires() < System.currentTimeMillis()) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return cached.rows();
+    }
+
+    private synchronized void cache(Key key, List<HistoryRow> rows) {
+        if (cacheMillis <= 0) return;
+        cache.put(key, new Cached(rows, System.currentTimeMillis() + cacheMillis));
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    @Override
+    public List<Keyed<HistoryRow>> containerHistory(String world, long pos, Cursor after, int limit) throws SQLException {
+        return local.containerHistory(world, pos, after, limit);
+    }
+
+    @Override
+    public List<AreaRow> area(Partitions.Kind kind, String world, int cx, int cz, int radius, long since) throws SQLException {
+        if (kind != Partitions.Kind.BLOCK) return local.area(kind, world, cx, cz, radius, since);
+
+        World w = Bukkit.getWorld(world);
+        if (w == null) return List.of();
+
+        List<AreaRow> rows = new ArrayList<>();
+        for (CoreProtectAPI.ParseResult parse : lookup(null, since, radius, new Location(w, cx, 0, cz))) {
+            rows.add(new AreaRow(parse.getPlayer(), actionCode(parse), parse.getType().name(), 1));
+        }
+        return AreaRow.sum(rows);
+    }
+
+    /**
+     * CoreProtect rows have no id visible through the API; rows of the same second get
+     * a descending sequence number instead, stable as long as that second gets no new rows.
+     */
+    @Override
+    public List<ActivityLookup.Row> activity(Partitions.Kind kind, String player, long since, Cursor after, int limit) throws SQLException {
+        if (kind != Partitions.Kind.BLOCK) return local.activity(kind, player, since, after, limit);
+
+        List<String[]> lookup = activityRows(player, since);
+
+        int k = kind.ordinal();
+        List<ActivityLookup.Row> rows = new ArrayList<>();
+        int groupEnd = -1;
+        long groupTime = 0;
+        for (int i = firstNotAfter(lookup, after.time()); i < lookup.size() && rows.size() < limit; i++) {
+            CoreProtectAPI.ParseResult parse = api.parseResult(lookup.get(i));
+            long time = parse.getTimestamp();
+
+            // Кінець групи рядків цієї секунди: номер рядка - скільки старіших у ній після нього
+            if (groupEnd < i || time != groupTime) {
+                groupTime = time;
+                groupEnd = i;
+                while (groupEnd + 1 < lookup.size() && api.parseResult(lookup.get(groupEnd + 1)).getTimestamp() == time) {
+                    groupEnd++;
+                }
+            }
+            long id = groupEnd - i;
+            if (time == after.time() && id >= after.id()) continue;
+
+            rows.add(new ActivityLookup.Row(
+                    new ActivityLookup.Cursor(time, k, id),
+                    actionCode(parse),
+                    parse.getType().name(),
+                    0,
+                    parse.worldName(),
+                    PackedPos.pack(parse.getX(), parse.getY(), parse.getZ())
+            ));
+        }
+        return rows;
+    }
+
+    /**
+     * Raw rows of the player, newest first; one CoreProtect query serves every page for a few seconds.
+     */
+    private List<String[]> activityRows(String player, long since) {
+        ActivityKey key = new ActivityKey(player.toLowerCase(Locale.ROOT), since);
+        synchronized (this) {
+            CachedActivity cached = activityCache.get(key);
+            if (cached != null && cached.expires() >= System.currentTimeMillis()) return cached.rows();
+        }
+
+        // Вікно обрізає лише сам запит: ключ кешу від нього не залежить, тож наступні сторінки влучають у кеш
+        long from = windowSeconds > 0 ? Math.max(since, System.currentTimeMillis() - windowSeconds * 1000L) : since;
+        long start = System.nanoTime();
+        List<String[]> lookup = api.performLookup(seconds(from), List.of(player), null, null, null, BLOCK_ACTIONS, 0, null);
+        metrics.coreProtect.stop(start);
+
+        List<String[]> rows = lookup == null ? List.of()
+                : List.copyOf(lookup.size() > activityMaxRows ? lookup.subList(0, activityMaxRows) : lookup);
+        if (cacheMillis > 0) {
+            synchronized (this) {
+                activityCache.put(key, new CachedActivity(rows, System.currentTimeMillis() + cacheMillis));
+            }
+        }
+        return rows;
+    }
+
+    // Перший рядок не новіший за time; рядки впорядковані від найновіших, розбираються лише log n
+    private int firstNotAfter(List<String[]> rows, long time) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (api.parseResult(rows.get(mid)).getTimestamp() > time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public List<RollbackJob.Row> rollbackRows(String world, int cx, int cz, int radius, long since,
+                                              @Nullable String player, int limit) throws SQLException {
+        World w = Bukkit.getWorld(world);
+        if (w == null) return List.of();
+
+        List<RollbackJob.Row> rows = new ArrayList<>();
+        for (CoreProtectAPI.ParseResult parse : lookup(player == null ? null : List.of(player), since, radius, new Location(w, cx, 0, cz))) {
+            if (rows.size() >= limit) break;
+            rows.add(new RollbackJob.Row(
+                    PackedPos.pack(parse.getX(), parse.getY(), parse.getZ()),
+                    actionCode(parse),
+                    parse.getType().name()
+            ));
+        }
+        return rows;
+    }
+
+    /**
+     * Block placements and removals, newest first.
+     *
+     * @param radius 0 with a null location for the whole server
+     */
+    private List<CoreProtectAPI.ParseResult> lookup(@Nullable List<String> users, long since, int radius, @Nullable Location center) {
+        long start = System.nanoTime();
+        List<String[]> lookup = api.performLookup(seconds(since), users, null, null, null, BLOCK_ACTIONS, radius, center);
+        metrics.coreProtect.stop(start);
+        if (lookup == null) return List.of();
+
+        List<CoreProtectAPI.ParseResult> results = new ArrayList<>(lookup.size());
+        for (String[] data : lookup) {
+            results.add(api.parseResult(data));
+        }
+        return results;
+    }
+
+    // Час для CoreProtect - секунди назад від зараз, 0 - без обмеження
+    private static int seconds(long since) {
+        return since == Long.MIN_VALUE
+                ? 0
+                : (int) Math.min(Integer.MAX_VALUE, Math.max(1L, (System.currentTimeMillis() - since) / 1000));
+    }
+
+    // Коди дій, як у власних записах плагіна; вибух - це злам від імені #джерела
+    private static String actionCode(CoreProtectAPI.ParseResult parse) {
+        return switch (parse.getActionId()) {
+            case 0 -> parse.getPlayer().startsWith("#") ? LogAction.EXPLODE.code() : LogAction.BREAK.code();
+            case 1 -> LogAction.PLACE.code();
+            default -> parse.getActionString();
+        };
+    }
+
+    @Override
+    public long sizeBytes() {
+        return local.sizeBytes();
+    }
+
+    @Override
+    public int readerCount() {
+        return local.readerCount();
+    }
+
+    @Override
+    public void close() {
+        local.close();
+    }
+}
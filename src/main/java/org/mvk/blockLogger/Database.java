@@ -0,0 +1,158 @@
+package org.mvk.blockLogger;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SQLite storage in WAL mode: one writer connection for the {@link LogWriter}
+ * and a small pool of read-only connections for history lookups,
+ * so readers never wait behind the insert stream.
+ */
+public class Database implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface SqlFunction<T, R> {
+        R apply(T t) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface PartitionQuery<R> {
+        /**
+         * @return at most {@code limit} rows from one partition
+         */
+        List<R> apply(CachedConnection connection, Partitions.Partition partition, int limit) throws SQLException;
+    }
+
+    private final File file;
+    private final String url;
+    private final Logger logger;
+
+    private CachedConnection writer;
+    private ConnectionPool readers;
+    private Partitions partitions;
+
+    public Database(File file, Logger logger) {
+        this.file = file;
+        this.url = "jdbc:sqlite:" + file.getAbsolutePath();
+        this.logger = logger;
+    }
+
+    public void open(int readerCount, int partitionDays) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement st = connection.createStatement()) {
+            st.execute("PRAGMA journal_mode = WAL");
+            st.execute("PRAGMA synchronous = NORMAL");
+            st.execute("PRAGMA busy_timeout = 5000");
+            st.execute("PRAGMA temp_store = MEMORY");
+            st.execute("PRAGMA cache_size = -16000");
+        }
+        partitions = new Partitions(partitionDays);
+        Schema.migrate(connection, partitions, logger);
+        partitions.load(connection);
+        writer = new CachedConnection(connection);
+
+        readers = new ConnectionPool(readerCount, () -> {
+            Connection reader = DriverManager.getConnection(url);
+            try (Statement st = reader.createStatement()) {
+                st.execute("PRAGMA busy_timeout = 5000");
+                st.execute("PRAGMA cache_size = -8000");
+                st.execute("PRAGMA mmap_size = 268435456");
+                st.execute("PRAGMA query_only = ON");
+            }
+            return reader;
+        }, 0, logger);
+    }
+
+    public int readerCount() {
+        return readers.size();
+    }
+
+    /**
+     * Writer connection. Only the writer thread may use it.
+     */
+    public CachedConnection writer() {
+        return writer;
+    }
+
+    public Partitions partitions() {
+        return partitions;
+    }
+
+    /**
+     * Size on disk, including the WAL file that is not yet checkpointed.
+     */
+    public long sizeBytes() {
+        return file.length() + new File(file.getPath() + "-wal").length();
+    }
+
+    /**
+     * Runs the query on partitions of the given kind, newest first,
+     * and stops as soon as {@code limit} rows are collected.
+     */
+    public <R> List<R> readNewestFirst(Partitions.Kind kind, int limit, PartitionQuery<R> query) throws SQLException {
+        return readNewestFirst(kind, Long.MIN_VALUE, limit, query);
+    }
+
+    /**
+     * Same as {@link #readNewestFirst(Partitions.Kind, int, PartitionQuery)},
+     * but skips partitions that end before {@code since}.
+     */
+    public <R> List<R> readNewestFirst(Partitions.Kind kind, long since, int limit, PartitionQuery<R> query) throws SQLException {
+        return read(connection -> {
+            List<R> rows = new ArrayList<>();
+            for (Partitions.Partition partition : partitions.newestFirst(kind)) {
+                if (partition.end() <= since) break;
+                int remaining = limit - rows.size();
+                if (remaining <= 0) break;
+                try {
+                    rows.addAll(query.apply(connection, partition, remaining));
+                } catch (SQLException e) {
+                    // Партицію могли видалити за політикою зберігання під час пошуку
+                    if (partitions.exists(partition)) throw e;
+                }
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Runs a query on a pooled read connection, waiting for a free one if all are busy.
+     */
+    public <T> T read(SqlFunction<CachedConnection, T> query) throws SQLException {
+        return readers.read(query);
+    }
+
+    @Override
+    public void close() {
+        if (readers != null) {
+            readers.close();
+            readers = null;
+        }
+
+        if (writer != null) {
+            // Перенести WAL у основний файл, щоб logs.db був цілісним без -wal
+            try (Statement st = writer.raw().createStatement()) {
+                st.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "WAL checkpoint error", e);
+            }
+            closeQuietly(writer);
+            writer = null;
+        }
+    }
+
+    private void closeQuietly(CachedConnection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "DB close error", e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.mvk.blockLogger;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Interns worlds, materials, action codes, players and {@link ItemSnapshot}s into small integer ids.
+ * Used only from the writer thread, so the caches are plain maps.
+ */
+public class Dictionaries {
+
+    /**
+     * Insert syntax of the storage; the tables are the same.
+     */
+    public enum Dialect {
+        SQLITE("INSERT OR IGNORE INTO", "ON CONFLICT(uuid) DO UPDATE SET name = excluded.name"),
+        MYSQL("INSERT IGNORE INTO", "ON DUPLICATE KEY UPDATE name = VALUES(name)");
+
+        private final String insertIgnore;
+        private final String upsertName;
+
+        Dialect(String insertIgnore, String upsertName) {
+            this.insertIgnore = insertIgnore;
+            this.upsertName = upsertName;
+        }
+    }
+
+    private static final int ITEM_CACHE = 4096;
+
+    private final CachedConnection connection;
+    private final Dialect dialect;
+    private final String prefix;
+
+    private final Map<String, Integer> worlds = new HashMap<>();
+    private final Map<String, Integer> materials = new HashMap<>();
+    private final Map<String, Integer> actions = new HashMap<>();
+    private final Map<UUID, PlayerId> players = new HashMap<>();
+    private final Map<String, Integer> sources = new HashMap<>();
+    // Хеш знімка -> id; різних знімків може бути дуже багато, тож кешуються лише недавні
+    private final Map<ByteBuffer, Integer> items = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Integer> eldest) {
+            return size() > ITEM_CACHE;
+        }
+    };
+
+    private record PlayerId(int id, String name) {
+    }
+
+    /**
+     * @param prefix prepended to every table name, empty for none
+     */
+    public Dictionaries(CachedConnection connection, Dialect dialect, String prefix) {
+        this.connection = connection;
+        this.dialect = dialect;
+        this.prefix = prefix;
+    }
+
+    public int world(String name) throws SQLException {
+        return intern(worlds, "worlds", "name", name);
+    }
+
+    public int material(String name) throws SQLException {
+        return intern(materials, "materials", "name", name);
+    }
+
+    public int action(String code) throws SQLException {
+        return intern(actions, "actions", "code", code);
+    }
+
+    /**
+     * @param uuid player UUID, or null for non-player sources such as {@code #creeper}
+     */
+    public int player(UUID uuid, String name) throws SQLException {
+        if (uuid == null) {
+            Integer id = sources.get(name);
+            if (id != null) return id;
+
+            // У MySQL немає часткового унікального індексу - спершу пошук, вставка лише нового джерела
+            id = findId("SELECT id FROM " + prefix + "players WHERE name = ? AND uuid IS NULL", name);
+            if (id == null) {
+                PreparedStatement ps = connection.prepare(dialect.insertIgnore + " " + prefix + "players (uuid, name) VALUES (NULL, ?)");
+                ps.setString(1, name);
+                ps.executeUpdate();
+                id = selectId("SELECT id FROM " + prefix + "players WHERE name = ? AND uuid IS NULL", name);
+            }
+            sources.put(name, id);
+            return id;
+        }
+
+        PlayerId cached = players.get(uuid);
+        if (cached != null && cached.name().equals(name)) return cached.id();
+
+        PreparedStatement ps = connection.prepare("INSERT INTO " + prefix + "players (uuid, name) VALUES (?, ?) " + dialect.upsertName);
+        ps.setString(1, uuid.toString());
+        ps.setString(2, name);
+        ps.executeUpdate();
+        int id = selectId("SELECT id FROM " + prefix + "players WHERE uuid = ?", uuid.toString());
+        players.put(uuid, new PlayerId(id, name));
+        return id;
+    }
+
+    /**
+     * Id of the snapshot in the {@code items} table; equal snapshots share one row.
+     *
+     * @return 0 for no snapshot
+     */
+    public int item(@Nullable byte[] data) throws SQLException {
+        if (data == null) return 0;
+
+        byte[] hash = ItemSnapshot.hash(data);
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        Integer id = items.get(key);
+        if (id != null) return id;
+
+        PreparedStatement ps = connection.prepare(dialect.insertIgnore + " " + prefix + "items (hash, data) VALUES (?, ?)");
+        ps.setBytes(1, hash);
+        ps.setBytes(2, data);
+        ps.executeUpdate();
+
+        PreparedStatement find = connection.prepare("SELECT id FROM " + prefix + "items WHERE hash = ?");
+        find.setBytes(1, hash);
+        try (ResultSet rs = find.executeQuery()) {
+            if (!rs.next()) throw new SQLException("Item snapshot id not found");
+            id = rs.getInt(1);
+        }
+        items.put(key, id);
+        return id;
+    }
+
+    /**
+     * Forgets cached ids. Called after a rolled back transaction, whose inserts may be gone.
+     */
+    public void clear() {
+        worlds.clear();
+        materials.clear();
+        actions.clear();
+        players.clear();
+        sources.clear();
+        items.clear();
+    }
+
+    /**
+     * Forgets cached snapshot ids after unused snapshots were deleted.
+     */
+    public void clearItems() {
+        items.clear();
+    }
+
+    private int intern(Map<String, Integer> cache, String table, String column, String value) throws SQLException {
+        Integer id = cache.get(value);
+        if (id != null) return id;
+
+        PreparedStatement ps = connection.prepare(dialect.insertIgnore + " " + prefix + table + " (" + column + ") VALUES (?)");
+        ps.setString(1, value);
+        ps.executeUpdate();
+        id = selectId("SELECT id FROM " + prefix + table + " WHERE " + column + " = ?", value);
+        cache.put(value, id);
+        return id;
+    }
+
+    private int selectId(String sql, String value) throws SQLException {
+        Integer id = findId(sql, value);
+        if (id == null) throw new SQLException("Dictionary id not found: " + value);
+        return id;
+    }
+
+    private Integer findId(String sql, String value) throws SQLException {
+        PreparedStatement ps = connection.prepare(sql);
+        ps.setString(1, value);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : null;
+        }
+    }
+}
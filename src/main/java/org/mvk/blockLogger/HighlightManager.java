@@ -0,0 +1,224 @@
+package org.mvk.blockLogger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Color;
+import org.bukkit.Particle;
+import org.bukkit.block.Block;
+import org.bukkit.entity.BlockDisplay;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Block highlights with bounded cost. Glowing outlines are non-persistent block displays
+ * shown only to the player who asked; on Paper they are reused from a small pool instead of spawned per use.
+ * Every highlight has a timer on the thread that owns its block and is cancelled when it expires,
+ * so on Folia no highlight touches a region it does not belong to.
+ * <p>
+ * {@link #show} and {@link #particles} must run on the thread that owns the block;
+ * the caps are shared and guarded by this object.
+ */
+public class HighlightManager {
+
+    private static final long PERIOD = 10L;
+
+    private static final class Highlight {
+        final UUID viewer;
+        final Block block;
+        final BlockDisplay display;
+        // Лише потік, що володіє блоком
+        long remaining;
+        Scheduling.Task task;
+
+        Highlight(UUID viewer, Block block, BlockDisplay display, long remaining) {
+            this.viewer = viewer;
+            this.block = block;
+            this.display = display;
+            this.remaining = remaining;
+        }
+    }
+
+    private final Plugin plugin;
+    private final Scheduling scheduling;
+    private final int durationTicks;
+    private final int maxPerPlayer;
+    private final int maxTotal;
+    private final int poolSize;
+
+    // Від найстарішого до найновішого
+    private final Deque<Highlight> active = new ArrayDeque<>();
+    private final Deque<BlockDisplay> pool = new ArrayDeque<>();
+
+    public HighlightManager(Plugin plugin, Scheduling scheduling, int durationTicks, int maxPerPlayer, int maxTotal, int poolSize) {
+        this.plugin = plugin;
+        this.scheduling = scheduling;
+        this.durationTicks = Math.max(1, durationTicks);
+        this.maxPerPlayer = Math.max(1, maxPerPlayer);
+        this.maxTotal = Math.max(1, maxTotal);
+        // На Folia сутність не переставити в інший регіон синхронно - без пулу
+        this.poolSize = scheduling.folia() ? 0 : Math.max(0, poolSize);
+    }
+
+    /**
+     * Outlines the block for {@code viewer} only. Repeating a highlight refreshes it;
+     * over the per-player or server cap the oldest highlight is dropped.
+     */
+    public void show(Player viewer, Block block) {
+        UUID viewerId = viewer.getUniqueId();
+        int own = 0;
+        Highlight oldestOwn = null;
+
+        synchronized (this) {
+            for (Highlight h : active) {
+                if (!viewerId.equals(h.viewer)) continue;
+                if (h.block.equals(block)) {
+                    h.remaining = durationTicks;
+                    return;
+                }
+                if (oldestOwn == null) oldestOwn = h;
+                own++;
+            }
+        }
+
+        if (own >= maxPerPlayer) expire(oldestOwn);
+        expireOverCap();
+
+        BlockDisplay display = acquire(block);
+        viewer.showEntity(plugin, display);
+        add(new Highlight(viewerId, block, display, durationTicks));
+    }
+
+    /**
+     * Particle marker above the block, visible to everyone nearby.
+     */
+    public void particles(Block block, int durationTicks) {
+        expireOverCap();
+        add(new Highlight(null, block, null, durationTicks));
+    }
+
+    public synchronized int active() {
+        return active.size();
+    }
+
+    /**
+     * Removes every display, pooled or shown, and cancels the timers.
+     */
+    public void shutdown() {
+        List<Highlight> all;
+        synchronized (this) {
+            all = new ArrayList<>(active);
+            active.clear();
+        }
+        for (Highlight h : all) {
+            h.task.cancel();
+            // На Folia сутності чужих регіонів не чіпати: вони не зберігаються і зникнуть із сервером
+            if (h.display != null && !scheduling.folia()) h.display.remove();
+        }
+
+        synchronized (pool) {
+            for (BlockDisplay display : pool) {
+                display.remove();
+            }
+            pool.clear();
+        }
+    }
+
+    private void add(Highlight highlight) {
+        if (highlight.display == null) spawnParticles(highlight.block);
+        // Таймер до додавання в active: expire() має що скасувати
+        highlight.task = scheduling.timerAt(highlight.block.getLocation(), () -> tick(highlight), PERIOD, PERIOD);
+        synchronized (this) {
+            active.addLast(highlight);
+        }
+    }
+
+    private void tick(Highlight highlight) {
+        highlight.remaining -= PERIOD;
+
+        boolean offline = highlight.viewer != null && Bukkit.getPlayer(highlight.viewer) == null;
+        if (highlight.remaining <= 0 || offline) {
+            expire(highlight);
+        } else if (highlight.display == null) {
+            spawnParticles(highlight.block);
+        }
+    }
+
+    private void expireOverCap() {
+        Highlight oldest;
+        synchronized (this) {
+            oldest = active.size() >= maxTotal ? active.peekFirst() : null;
+        }
+        expire(oldest);
+    }
+
+    // Підсвітка з іншого регіону прибирається його потоком
+    private void expire(Highlight highlight) {
+        if (highlight == null) return;
+        synchronized (this) {
+            if (!active.remove(highlight)) return;
+        }
+        highlight.task.cancel();
+        scheduling.runAt(highlight.block.getLocation(), () -> release(highlight));
+    }
+
+    private BlockDisplay acquire(Block block) {
+        BlockDisplay display;
+        while ((display = pooled()) != null) {
+            // Сутність могла зникнути разом із вивантаженим чанком
+            if (!display.isValid()) continue;
+            display.teleport(block.getLocation());
+            display.setBlock(block.getBlockData());
+            return display;
+        }
+
+        return block.getWorld().spawn(block.getLocation(), BlockDisplay.class, d -> {
+            d.setPersistent(false);
+            d.setVisibleByDefault(false);
+            d.setGlowing(true);
+            d.setGlowColorOverride(Color.AQUA);
+            d.setBlock(block.getBlockData());
+        });
+    }
+
+    private BlockDisplay pooled() {
+        synchronized (pool) {
+            return pool.pollFirst();
+        }
+    }
+
+    private void release(Highlight highlight) {
+        BlockDisplay display = highlight.display;
+        if (display == null) return;
+
+        Player viewer = Bukkit.getPlayer(highlight.viewer);
+        if (viewer != null) viewer.hideEntity(plugin, display);
+
+        if (display.isValid()) {
+            synchronized (pool) {
+                if (pool.size() < poolSize) {
+                    pool.addLast(display);
+                    return;
+                }
+            }
+        }
+        display.remove();
+    }
+    private static void spawnParticles(Block block) {
+        block.getWorld().spawnParticle(
+                Particle.END_ROD,
+                block.getX() + 0.5,
+                block.getY() + 1.1,
+                block.getZ() + 0.5,
+                10,
+                0.3,
+                0.3,
+                0.3,
+                0.01
+        );
+    }
+}
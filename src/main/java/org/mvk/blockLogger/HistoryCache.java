@@ -0,0 +1,137 @@
+package org.mvk.blockLogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of recent history rows per block, newest first.
+ * <p>
+ * New writes are applied to cached entries right away. A lookup result is only cached
+ * if no write to that block is still waiting in the {@link LogWriter} queue,
+ * otherwise the database could have returned rows without it.
+ */
+public class HistoryCache {
+
+    public record Key(String world, long pos, boolean container) {
+    }
+
+    private static final class Entry {
+        final List<HistoryRow> rows;
+        final int limit;
+
+        Entry(List<HistoryRow> rows, int limit) {
+            this.rows = rows;
+            this.limit = limit;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries;
+    // Записи, які ще в черзі запису: ключ -> номер останнього запису
+    private final Map<Key, Long> pending = new HashMap<>();
+
+    private long hits;
+    private long misses;
+
+    public HistoryCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > HistoryCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return up to {@code limit} rows, or null when the cache cannot answer
+     */
+    public synchronized List<HistoryRow> get(Key key, int limit) {
+        Entry entry = entries.get(key);
+        // Кеш відповідає, якщо має не менше рядків, або історія блоку коротша за ліміт
+        if (entry == null || (limit > entry.limit && entry.rows.size() >= entry.limit)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(entry.rows.subList(0, Math.min(limit, entry.rows.size())));
+    }
+
+    /**
+     * @param committedBefore {@link LogWriter#committed()} read before the query started
+     */
+    public synchronized void put(Key key, List<HistoryRow> rows, int limit, long committedBefore) {
+        Long lastWrite = pending.get(key);
+        if (lastWrite != null && lastWrite > committedBefore) return;
+
+        Entry current = entries.get(key);
+        if (current != null && current.limit >= limit) return;
+
+        entries.put(key, new Entry(new ArrayList<>(rows), limit));
+    }
+
+    /**
+     * Write-through for an entry that was just submitted with sequence number {@code seq}.
+     */
+    public synchronized void written(LogEntry entry, long seq) {
+        long time = entry.time();
+
+        if (entry instanceof LogEntry.BlockEntry b) {
+            written(new Key(b.world(), PackedPos.pack(b.x(), b.y(), b.z()), false),
+                    new HistoryRow(b.action().code(), b.block(), 0, b.player(), time), seq);
+        } else if (entry instanceof LogEntry.ContainerEntry c) {
+            written(new Key(c.world(), PackedPos.pack(c.x(), c.y(), c.z()), true),
+                    new HistoryRow(c.action().code(), c.item(), c.amount(), c.player(), time, c.itemData()), seq);
+        } else if (entry instanceof LogEntry.ContainerSessionEntry c) {
+            Key key = new Key(c.world(), PackedPos.pack(c.x(), c.y(), c.z()), true);
+            for (int i = 0; i < c.materials().length; i++) {
+                int delta = c.deltas()[i];
+                LogAction action = delta > 0 ? LogAction.PUT : LogAction.TAKE;
+                written(key, new HistoryRow(action.code(), c.materials()[i], Math.abs(delta), c.player(), time, c.itemData()[i]), seq);
+            }
+        } else if (entry instanceof LogEntry.ExplosionEntry x) {
+            for (int i = 0; i < x.positions().length; i++) {
+                written(new Key(x.world(), x.positions()[i], false),
+                        new HistoryRow(LogAction.EXPLODE.code(), x.materials()[i], 0, x.source(), time), seq);
+            }
+        }
+    }
+
+    private void written(Key key, HistoryRow row, long seq) {
+        pending.put(key, seq);
+
+        Entry entry = entries.get(key);
+        if (entry == null) return;
+
+        entry.rows.add(0, row);
+        if (entry.rows.size() > entry.limit) {
+            entry.rows.remove(entry.rows.size() - 1);
+        }
+    }
+
+    /**
+     * Called by the writer once everything up to {@code seq} is committed.
+     */
+    public synchronized void committed(long seq) {
+        pending.values().removeIf(lastWrite -> lastWrite <= seq);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+}
@@ -0,0 +1,59 @@
+package org.mvk.blockLogger;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Marks the container history GUI, so click handlers can recognise it
+ * with an instanceof check instead of comparing titles.
+ * Also keeps the viewer's paging state for as long as the GUI is open.
+ */
+public class HistoryGuiHolder implements InventoryHolder {
+
+    public static final int PAGE_SIZE = 45;
+    public static final int PREVIOUS_SLOT = 45;
+    public static final int PAGE_SLOT = 49;
+    public static final int NEXT_SLOT = 53;
+
+    private final ContainerPager pager;
+    private Inventory inventory;
+    private int page;
+    private boolean loading;
+
+    public HistoryGuiHolder(ContainerPager pager) {
+        this.pager = pager;
+    }
+
+    void setInventory(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    @Override
+    public @NotNull Inventory getInventory() {
+        return inventory;
+    }
+
+    public ContainerPager pager() {
+        return pager;
+    }
+
+    public int page() {
+        return page;
+    }
+
+    void page(int page) {
+        this.page = page;
+    }
+
+    /**
+     * Set while a page is being read, so repeated clicks do not queue more lookups.
+     */
+    public boolean loading() {
+        return loading;
+    }
+
+    void loading(boolean loading) {
+        this.loading = loading;
+    }
+}
@@ -0,0 +1,19 @@
+package org.mvk.blockLogger;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One history row as read from storage, before any MiniMessage rendering.
+ *
+ * @param action   action code, see {@link LogAction#fromCode(String)}
+ * @param amount   item count for container rows, 0 for block rows
+ * @param time     epoch millis
+ * @param itemData {@link ItemSnapshot} of a container item, null when only the material is known
+ */
+public record HistoryRow(String action, String material, int amount, String player, long time,
+                         @Nullable byte[] itemData) {
+
+    public HistoryRow(String action, String material, int amount, String player, long time) {
+        this(action, material, amount, player, time, null);
+    }
+}
@@ -0,0 +1,54 @@
+package org.mvk.blockLogger;
+
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Full copy of a logged item: enchantments, name, lore, shulker contents.
+ * Stored as Paper's {@link ItemStack#serializeAsBytes()} form, which is already gzip-compressed
+ * NBT with a data version, so old snapshots still load after a Minecraft update.
+ * <p>
+ * Storage keeps each distinct snapshot once, addressed by its {@link #hash(byte[])}.
+ */
+public final class ItemSnapshot {
+
+    private ItemSnapshot() {
+    }
+
+    /**
+     * Called on the thread that owns the item.
+     *
+     * @return snapshot of one item of the stack, or null for a plain item: its material says everything
+     */
+    public static @Nullable byte[] of(ItemStack item) {
+        if (!item.hasItemMeta()) return null;
+        // Кількість зберігається в рядку, тож однакові стаки різного розміру - один знімок
+        return item.asOne().serializeAsBytes();
+    }
+
+    /**
+     * @return the item, or null if the snapshot cannot be read on this server version
+     */
+    public static @Nullable ItemStack restore(byte[] data) {
+        try {
+            return ItemStack.deserializeBytes(data);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * SHA-256 of the snapshot, the key of the item dictionary.
+     */
+    public static byte[] hash(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // Кожна JVM зобов'язана мати SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
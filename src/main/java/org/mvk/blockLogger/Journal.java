@@ -0,0 +1,118 @@
+package org.mvk.blockLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Segments of one log kind in a {@link JournalStorage}, oldest first. Only the newest
+ * segment takes appends; when the next batch does not fit it is sealed and a new one is started.
+ */
+public class Journal {
+
+    private final Path dir;
+    private final int capacity;
+    private final List<JournalSegment> segments = new ArrayList<>();
+    private JournalSegment active;
+
+    /**
+     * @param capacity records per new segment
+     */
+    public Journal(Path dir, int capacity) throws IOException {
+        this.dir = dir;
+        this.capacity = capacity;
+        Files.createDirectories(dir);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+        for (Path file : files) {
+            segments.add(JournalSegment.open(file));
+        }
+
+        // Сегмент без індексу посередині - збій під час запечатування, допечатати
+        for (int i = 0; i < segments.size() - 1; i++) {
+            JournalSegment segment = segments.get(i);
+            if (!segment.sealed()) segment.seal();
+        }
+        if (!segments.isEmpty() && !segments.get(segments.size() - 1).sealed()) {
+            active = segments.get(segments.size() - 1);
+        }
+    }
+
+    // ===== WRITE =====
+
+    /**
+     * Makes room for {@code records} appends in the active segment, sealing it early if needed,
+     * so the appends of one batch never have to rotate segments halfway.
+     */
+    void reserve(int records) throws IOException {
+        if (records == 0) return;
+        if (active != null && !active.sealed() && active.room() >= records) return;
+
+        if (active != null && !active.sealed()) {
+            if (active.count() > 0) {
+                active.seal();
+            } else {
+                // Порожній сегмент замалий для пакета - замінити більшим
+                segments.remove(active);
+                active.delete();
+            }
+        }
+        long number = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).number() + 1;
+        // Пакет, більший за сегмент, отримує власний сегмент свого розміру
+        active = JournalSegment.create(dir, number, Math.max(capacity, records));
+        segments.add(active);
+    }
+
+    /**
+     * Appends one record into space made by {@link #reserve(int)}.
+     */
+    void append(long time, long pos, int world, int player, int material, int amount, int action) {
+        active.append(time, pos, world, player, material, amount, action);
+    }
+
+    void force() {
+        if (active != null) active.force();
+    }
+
+    /**
+     * Deletes sealed segments whose newest record is older than {@code before}.
+     *
+     * @return number of segments deleted
+     */
+    int dropBefore(long before) throws IOException {
+        int dropped = 0;
+        while (!segments.isEmpty() && segments.get(0) != active && segments.get(0).maxTime() < before) {
+            segments.remove(0).delete();
+            dropped++;
+        }
+        return dropped;
+    }
+
+    // ===== READ =====
+
+    /**
+     * Segments newest first. Must be used under the journal lock.
+     */
+    List<JournalSegment> newestFirst() {
+        List<JournalSegment> result = new ArrayList<>(segments);
+        Collections.reverse(result);
+        return result;
+    }
+
+    long sizeBytes() {
+        long size = 0;
+        for (JournalSegment segment : segments) size += segment.sizeBytes();
+        return size;
+    }
+
+    void close() throws IOException {
+        for (JournalSegment segment : segments) segment.close();
+    }
+}
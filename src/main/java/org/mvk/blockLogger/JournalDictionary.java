@@ -0,0 +1,241 @@
+package org.mvk.blockLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ids of worlds, materials, action codes and players for {@link JournalStorage},
+ * kept in memory and appended to a log file as they are assigned.
+ * A player who changes name gets a second entry with the same id; the last one wins on load.
+ * <p>
+ * Not thread-safe: the journal calls it under its own lock.
+ */
+public class JournalDictionary implements AutoCloseable {
+
+    private static final byte WORLD = 0;
+    private static final byte MATERIAL = 1;
+    private static final byte ACTION = 2;
+    private static final byte PLAYER = 3;
+
+    private final FileChannel channel;
+    private final DataOutputStream out;
+
+    private final Table worlds = new Table();
+    private final Table materials = new Table();
+    private final Table actions = new Table();
+    private final Map<UUID, Integer> players = new HashMap<>();
+    // Джерела без UUID (#creeper, #tnt) - за іменем
+    private final Map<String, Integer> sources = new HashMap<>();
+    private final List<String> playerNames = new ArrayList<>();
+
+    /**
+     * Values of one kind, id = position in {@code names}.
+     */
+    private static final class Table {
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+
+        void put(int id, String value) {
+            while (names.size() <= id) names.add(null);
+            names.set(id, value);
+            ids.put(value, id);
+        }
+
+        String name(int id) {
+            return id < names.size() ? names.get(id) : null;
+        }
+    }
+
+    public JournalDictionary(Path file) throws IOException {
+        long valid = Files.exists(file) ? load(file) : 0;
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Обірваний останній запис (збій під час запису) - відрізати, щоб дописувати після цілих
+        if (channel.size() > valid) channel.truncate(valid);
+        channel.position(valid);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * @return length of the file up to the last complete entry
+     */
+    private long load(Path file) throws IOException {
+        long valid = 0;
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+            while (true) {
+                long size = 0;
+                byte kind = in.readByte();
+                int id = in.readInt();
+                String value = in.readUTF();
+                size += 1 + 4 + 2 + utfLength(value);
+
+                switch (kind) {
+                    case WORLD -> worlds.put(id, value);
+                    case MATERIAL -> materials.put(id, value);
+                    case ACTION -> actions.put(id, value);
+                    case PLAYER -> {
+                        boolean hasUuid = in.readBoolean();
+                        size += 1;
+                        if (hasUuid) {
+                            players.put(new UUID(in.readLong(), in.readLong()), id);
+                            size += 16;
+                        } else {
+                            sources.put(value, id);
+                        }
+                        while (playerNames.size() <= id) playerNames.add(null);
+                        playerNames.set(id, value);
+                    }
+                    default -> throw new IOException("Unknown dictionary entry " + kind + " in " + file);
+                }
+                valid += size;
+            }
+        } catch (EOFException e) {
+            return valid;
+        }
+    }
+
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    // ===== WRITE =====
+
+    public int world(String name) throws IOException {
+        return intern(worlds, WORLD, name);
+    }
+
+    public int material(String name) throws IOException {
+        return intern(materials, MATERIAL, name);
+    }
+
+    public int action(String code) throws IOException {
+        return intern(actions, ACTION, code);
+    }
+
+    /**
+     * @param uuid player UUID, or null for non-player sources such as {@code #creeper}
+     */
+    public int player(UUID uuid, String name) throws IOException {
+        Integer id = uuid == null ? sources.get(name) : players.get(uuid);
+        if (id != null && name.equals(playerNames.get(id))) return id;
+
+        if (id == null) {
+            id = playerNames.size();
+            playerNames.add(name);
+            if (uuid == null) {
+                sources.put(name, id);
+            } else {
+                players.put(uuid, id);
+            }
+        } else {
+            // Гравець змінив ім'я - новий запис з тим самим id
+            playerNames.set(id, name);
+        }
+
+        out.writeByte(PLAYER);
+        out.writeInt(id);
+        out.writeUTF(name);
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+        return id;
+    }
+
+    private int intern(Table table, byte kind, String value) throws IOException {
+        Integer id = table.ids.get(value);
+        if (id != null) return id;
+
+        id = table.names.size();
+        table.put(id, value);
+        out.writeByte(kind);
+        out.writeInt(id);
+        out.writeUTF(value);
+        return id;
+    }
+
+    /**
+     * Writes new entries to disk. Called before the records that use them are forced.
+     */
+    public void flush() throws IOException {
+        out.flush();
+        channel.force(false);
+    }
+
+    // ===== READ =====
+
+    public Integer worldId(String name) {
+        return worlds.ids.get(name);
+    }
+
+    public String world(int id) {
+        return orUnknown(worlds.name(id), id);
+    }
+
+    public String material(int id) {
+        return orUnknown(materials.name(id), id);
+    }
+
+    public String action(int id) {
+        return orUnknown(actions.name(id), id);
+    }
+
+    public String player(int id) {
+        return orUnknown(id < playerNames.size() ? playerNames.get(id) : null, id);
+    }
+
+    /**
+     * Ids of every player with this name, case-insensitive.
+     */
+    public List<Integer> playerIds(String name) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < playerNames.size(); id++) {
+            if (name.equalsIgnoreCase(playerNames.get(id))) ids.add(id);
+        }
+        return ids;
+    }
+
+    // Запис пережив збій, а словник - ні: показати id замість імені
+    private static String orUnknown(String name, int id) {
+        return name != null ? name : "#" + id;
+    }
+
+    public long sizeBytes() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
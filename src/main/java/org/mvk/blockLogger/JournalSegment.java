@@ -0,0 +1,396 @@
+package org.mvk.blockLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * One file of a {@link JournalStorage} journal: fixed-width records, appended in order
+ * and read through a memory mapping.
+ * <p>
+ * Every record links to the previous record of the same chunk and of the same player
+ * in this segment, so the only index kept in memory is the newest record per chunk and per player.
+ * A full segment is sealed: its heads go to a {@code .idx} file and the file is remapped read-only.
+ * <p>
+ * Appends come from the writer thread only; readers and the writer are kept apart by the journal lock.
+ */
+public class JournalSegment {
+
+    /*
+     * Запис, 40 байт:
+     *  0 time      long  epoch millis, 0 - вільне місце
+     *  8 pos       long  PackedPos
+     * 16 player    int
+     * 20 material  int
+     * 24 amount    int   0 для блоків
+     * 28 prevChunk int   попередній запис того ж чанка в цьому сегменті, -1 - немає
+     * 32 prevPlayer int  попередній запис того ж гравця, -1 - немає
+     * 36 world     short
+     * 38 action    short
+     */
+    public static final int RECORD_BYTES = 40;
+    private static final int TIME = 0;
+    private static final int POS = 8;
+    private static final int PLAYER = 16;
+    private static final int MATERIAL = 20;
+    private static final int AMOUNT = 24;
+    private static final int PREV_CHUNK = 28;
+    private static final int PREV_PLAYER = 32;
+    private static final int WORLD = 36;
+    private static final int ACTION = 38;
+
+    private static final int INDEX_VERSION = 1;
+
+    private final long number;
+    private final Path file;
+    private final int capacity;
+    private final Heads chunks;
+    private final Heads players;
+
+    private MappedByteBuffer buffer;
+    private FileChannel channel;
+    private int count;
+    private int forced;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private boolean sealed;
+
+    private JournalSegment(long number, Path file, int capacity, Heads chunks, Heads players) {
+        this.number = number;
+        this.file = file;
+        this.capacity = capacity;
+        this.chunks = chunks;
+        this.players = players;
+    }
+
+    /**
+     * New empty segment of {@code capacity} records.
+     */
+    static JournalSegment create(Path dir, long number, int capacity) throws IOException {
+        Path file = dir.resolve(fileName(number));
+        JournalSegment segment = new JournalSegment(number, file, capacity, new Heads(), new Heads());
+        segment.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Файл одразу на повний розмір: дописування не змінює метадані файлу
+        segment.buffer = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_BYTES);
+        return segment;
+    }
+
+    /**
+     * Existing segment: sealed if its index exists, otherwise rebuilt by scanning the records.
+     */
+    static JournalSegment open(Path file) throws IOException {
+        long number = Long.parseLong(file.getFileName().toString().replace(".seg", ""));
+        int capacity = (int) (Files.size(file) / RECORD_BYTES);
+        Path index = indexFile(file);
+
+        if (Files.exists(index)) {
+            try (InputStream raw = Files.newInputStream(index);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+                if (in.readInt() != INDEX_VERSION) throw new IOException("Unknown index version: " + index);
+
+                int count = in.readInt();
+                long minTime = in.readLong();
+                long maxTime = in.readLong();
+                JournalSegment segment = new JournalSegment(number, file, capacity, Heads.read(in), Heads.read(in));
+                segment.count = count;
+                segment.forced = count;
+                segment.minTime = minTime;
+                segment.maxTime = maxTime;
+                segment.sealed = true;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    segment.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) capacity * RECORD_BYTES);
+                }
+                return segment;
+            }
+        }
+
+        JournalSegment segment = new JournalSegment(number, file, capacity, new Heads(), new Heads());
+        segment.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.buffer = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_BYTES);
+        segment.recover();
+        return segment;
+    }
+
+    // Записи до першого порожнього; обірваний запис без часу відкидається
+    private void recover() {
+        while (count < capacity && buffer.getLong(count * RECORD_BYTES + TIME) != 0) {
+            int at = count * RECORD_BYTES;
+            long time = buffer.getLong(at + TIME);
+            chunks.put(chunkKey(buffer.getShort(at + WORLD), buffer.getLong(at + POS)), count);
+            players.put(buffer.getInt(at + PLAYER), count);
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            count++;
+        }
+        forced = count;
+    }
+
+    static String fileName(long number) {
+        return String.format("%012d.seg", number);
+    }
+
+    private static Path indexFile(Path segment) {
+        return segment.resolveSibling(segment.getFileName().toString().replace(".seg", ".idx"));
+    }
+
+    /**
+     * Chunk of a record. Keys of different worlds may collide; readers compare world and position anyway.
+     */
+    static long chunkKey(int world, long pos) {
+        return PackedPos.chunkKey(PackedPos.x(pos) >> 4, PackedPos.z(pos) >> 4) * 31 + world;
+    }
+
+    // ===== WRITE =====
+
+    /**
+     * Records that still fit in this segment.
+     */
+    int room() {
+        return capacity - count;
+    }
+
+    /**
+     * Appends one record; the segment must not be full.
+     */
+    void append(long time, long pos, int world, int player, int material, int amount, int action) {
+        int index = count;
+        int at = index * RECORD_BYTES;
+
+        buffer.putLong(at + POS, pos);
+        buffer.putInt(at + PLAYER, player);
+        buffer.putInt(at + MATERIAL, material);
+        buffer.putInt(at + AMOUNT, amount);
+        buffer.putInt(at + PREV_CHUNK, chunks.put(chunkKey(world, pos), index));
+        buffer.putInt(at + PREV_PLAYER, players.put(player, index));
+        buffer.putShort(at + WORLD, (short) world);
+        buffer.putShort(at + ACTION, (short) action);
+        // Час останнім: запис з ненульовим часом - повний
+        buffer.putLong(at + TIME, time);
+
+        count = index + 1;
+        if (time < minTime) minTime = time;
+        if (time > maxTime) maxTime = time;
+    }
+
+    /**
+     * Writes records appended since the last call to disk.
+     */
+    void force() {
+        if (sealed || forced == count) return;
+        buffer.force(forced * RECORD_BYTES, (count - forced) * RECORD_BYTES);
+        forced = count;
+    }
+
+    /**
+     * Writes the index and makes the segment read-only. The file stays mapped for readers.
+     */
+    void seal() throws IOException {
+        force();
+
+        Path index = indexFile(file);
+        Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (OutputStream raw = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw))) {
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(count);
+            out.writeLong(minTime);
+            out.writeLong(maxTime);
+            chunks.write(out);
+            players.write(out);
+        }
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        channel.close();
+        channel = null;
+        try (FileChannel readOnly = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = readOnly.map(FileChannel.MapMode.READ_ONLY, 0, (long) capacity * RECORD_BYTES);
+        }
+        sealed = true;
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(indexFile(file));
+        Files.deleteIfExists(file);
+    }
+
+    void close() throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // ===== READ =====
+
+    /**
+     * Id of a record, unique across segments and growing with append order.
+     */
+    long id(int index) {
+        return (number << 32) | index;
+    }
+
+    long number() {
+        return number;
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean sealed() {
+        return sealed;
+    }
+
+    long minTime() {
+        return minTime;
+    }
+
+    long maxTime() {
+        return maxTime;
+    }
+
+    long sizeBytes() {
+        return (long) capacity * RECORD_BYTES;
+    }
+
+    /**
+     * Newest record of the chunk containing {@code pos}, or -1.
+     */
+    int chunkHead(int world, long pos) {
+        return chunks.get(chunkKey(world, pos));
+    }
+
+    /**
+     * Newest record of the player, or -1.
+     */
+    int playerHead(int player) {
+        return players.get(player);
+    }
+
+    int prevInChunk(int index) {
+        return buffer.getInt(index * RECORD_BYTES + PREV_CHUNK);
+    }
+
+    int prevByPlayer(int index) {
+        return buffer.getInt(index * RECORD_BYTES + PREV_PLAYER);
+    }
+
+    long time(int index) {
+        return buffer.getLong(index * RECORD_BYTES + TIME);
+    }
+
+    long pos(int index) {
+        return buffer.getLong(index * RECORD_BYTES + POS);
+    }
+
+    int world(int index) {
+        return buffer.getShort(index * RECORD_BYTES + WORLD);
+    }
+
+    int player(int index) {
+        return buffer.getInt(index * RECORD_BYTES + PLAYER);
+    }
+
+    int material(int index) {
+        return buffer.getInt(index * RECORD_BYTES + MATERIAL);
+    }
+
+    int amount(int index) {
+        return buffer.getInt(index * RECORD_BYTES + AMOUNT);
+    }
+
+    int action(int index) {
+        return buffer.getShort(index * RECORD_BYTES + ACTION);
+    }
+
+    /**
+     * Open-addressing map from long keys to record indexes; no allocation per put.
+     */
+    static final class Heads {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        Heads() {
+            Arrays.fill(values, -1);
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                if (values[slot] < 0) return -1;
+                if (keys[slot] == key) return values[slot];
+            }
+        }
+
+        /**
+         * @return previous value, or -1
+         */
+        int put(long key, int value) {
+            if (size * 2 >= keys.length) grow();
+
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                if (values[slot] < 0) {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    size++;
+                    return -1;
+                }
+                if (keys[slot] == key) {
+                    int previous = values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(values, -1);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] >= 0) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] < 0) continue;
+                out.writeLong(keys[i]);
+                out.writeInt(values[i]);
+            }
+        }
+
+        static Heads read(DataInputStream in) throws IOException {
+            Heads heads = new Heads();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                heads.put(in.readLong(), in.readInt());
+            }
+            return heads;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package org.mvk.blockLogger;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only binary storage for write-heavy servers: every log row is a fixed-width record
+ * appended to a memory-mapped {@link JournalSegment}, one {@link Journal} per log kind.
+ * A write is a few buffer puts instead of a B-tree insert; a block lookup follows the
+ * chunk links of each segment, so it only touches the pages holding that chunk's records.
+ * <p>
+ * There are no transactions, but a batch is all or nothing: dictionary ids and segment space are
+ * taken before the first record is appended, so a failed batch can be retried without duplicates.
+ * Retention deletes whole sealed segments. Records are fixed-width, so container rows keep
+ * the material only, without an {@link ItemSnapshot}.
+ * <p>
+ * Records are appended roughly, not strictly, in time order: folded automation rows, session
+ * diffs and entries from Folia region threads arrive late. Lookups therefore sort the matches
+ * by (time, id) before paging, like the SQL storages do.
+ */
+public class JournalStorage implements StorageEngine {
+
+    private final Logger logger;
+    private final int readerCount;
+    private final JournalDictionary dictionary;
+    private final Journal blocks;
+    private final Journal containers;
+
+    // Запис - пачка під write lock, пошуки - під read lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long sizeBytes;
+
+    /**
+     * @param segmentMegabytes size of a new segment file
+     */
+    public JournalStorage(Path dir, int segmentMegabytes, int readerCount, Logger logger) throws IOException {
+        this.logger = logger;
+        this.readerCount = Math.max(1, readerCount);
+
+        // Позиція запису в сегменті - int, тож сегмент менший за 2 ГБ
+        int megabytes = Math.max(1, Math.min(segmentMegabytes, 2000));
+        int capacity = (int) (megabytes * 1048576L / JournalSegment.RECORD_BYTES);
+
+        Files.createDirectories(dir);
+        dictionary = new JournalDictionary(dir.resolve("dictionary.dat"));
+        blocks = new Journal(dir.resolve(Partitions.Kind.BLOCK.prefix()), capacity);
+        containers = new Journal(dir.resolve(Partitions.Kind.CONTAINER.prefix()), capacity);
+        refreshSize();
+    }
+
+    @Override
+    public String name() {
+        return "journal";
+    }
+
+    private Journal journal(Partitions.Kind kind) {
+        return kind == Partitions.Kind.BLOCK ? blocks : containers;
+    }
+
+    // ===== WRITE =====
+
+    @Override
+    public boolean write(List<LogEntry> batch) {
+        lock.writeLock().lock();
+        try {
+            // Спершу все, що може впасти: id зі словника і місце в сегментах; жодного запису ще немає
+            List<Row> blockRows = new ArrayList<>();
+            List<Row> containerRows = new ArrayList<>();
+            for (LogEntry entry : batch) {
+                if (entry instanceof LogEntry.BlockEntry b) {
+                    blockRows.add(new Row(b.time(), PackedPos.pack(b.x(), b.y(), b.z()),
+                            dictionary.world(b.world()),
+                            dictionary.player(b.playerId(), b.player()),
+                            dictionary.material(b.block()),
+                            0,
+                            dictionary.action(b.action().code())));
+                } else if (entry instanceof LogEntry.ContainerEntry c) {
+                    containerRows.add(new Row(c.time(), PackedPos.pack(c.x(), c.y(), c.z()),
+                            dictionary.world(c.world()),
+                            dictionary.player(c.playerId(), c.player()),
+                            dictionary.material(c.item()),
+                            c.amount(),
+                            dictionary.action(c.action().code())));
+                } else if (entry instanceof LogEntry.ContainerSessionEntry c) {
+                    int world = dictionary.world(c.world());
+                    long pos = PackedPos.pack(c.x(), c.y(), c.z());
+                    int player = dictionary.player(c.playerId(), c.player());
+
+                    for (int i = 0; i < c.materials().length; i++) {
+                        int delta = c.deltas()[i];
+                        LogAction action = delta > 0 ? LogAction.PUT : LogAction.TAKE;
+                        containerRows.add(new Row(c.time(), pos, world, player,
+                                dictionary.material(c.materials()[i]), Math.abs(delta), dictionary.action(action.code())));
+                    }
+                } else if (entry instanceof LogEntry.ExplosionEntry x) {
+                    int world = dictionary.world(x.world());
+                    int action = dictionary.action(LogAction.EXPLODE.code());
+                    int player = dictionary.player(x.playerId(), x.source());
+
+                    for (int i = 0; i < x.positions().length; i++) {
+                        blockRows.add(new Row(x.time(), x.positions()[i], world, player,
+                                dictionary.material(x.materials()[i]), 0, action));
+                    }
+                }
+            }
+            blocks.reserve(blockRows.size());
+            containers.reserve(containerRows.size());
+
+            // Далі лише записи в буфер: пакет або ввійшов увесь, або жодного запису, тож повтор не дублює
+            for (Row row : blockRows) row.appendTo(blocks);
+            for (Row row : containerRows) row.appendTo(containers);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Batch write error (" + batch.size() + " entries)", e);
+            return false;
+        } finally {
+            refreshSize();
+            lock.writeLock().unlock();
+        }
+
+        // Скидання на диск поза блокуванням: пошуки не чекають на fsync
+        try {
+            dictionary.flush();
+            blocks.force();
+            containers.force();
+        } catch (IOException | RuntimeException e) {
+            // Пакет уже в журналі: повтор його задублював би, а не скинуте піде з наступним пакетом
+            logger.log(Level.SEVERE, "Journal flush error, records will be forced with the next batch", e);
+        }
+        return true;
+    }
+
+    // Рядок пакета з уже виданими id словника
+    private record Row(long time, long pos, int world, int player, int material, int amount, int action) {
+        void appendTo(Journal journal) {
+            journal.append(time, pos, world, player, material, amount, action);
+        }
+    }
+
+    @Override
+    public void purge(Partitions.Kind kind, long before) {
+        lock.writeLock().lock();
+        try {
+            int dropped = journal(kind).dropBefore(before);
+            if (dropped > 0) {
+                logger.info("Retention: dropped " + dropped + " expired " + kind.prefix() + " segments");
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Segment delete error", e);
+        } finally {
+            refreshSize();
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ===== READ =====
+
+    @Override
+    public List<HistoryRow> blockHistory(String world, long pos, int limit) {
+        List<Keyed<HistoryRow>> rows = history(blocks, world, pos, Cursor.START, limit);
+        List<HistoryRow> result = new ArrayList<>(rows.size());
+        for (Keyed<HistoryRow> row : rows) result.add(row.row());
+        return result;
+    }
+
+    @Override
+    public List<Keyed<HistoryRow>> containerHistory(String world, long pos, Cursor after, int limit) {
+        return history(containers, world, pos, after, limit);
+    }
+
+    private List<Keyed<HistoryRow>> history(Journal journal, String world, long pos, Cursor after, int limit) {
+        lock.readLock().lock();
+        try {
+            Integer w = dictionary.worldId(world);
+            if (w == null) return List.of();
+
+            List<Hit> hits = newest(journal, Long.MIN_VALUE, after, limit, (segment, visitor) -> {
+                for (int i = segment.chunkHead(w, pos); i >= 0; i = segment.prevInChunk(i)) {
+                    if (segment.pos(i) == pos && segment.world(i) == w) visitor.visit(i);
+                }
+            });
+
+            List<Keyed<HistoryRow>> rows = new ArrayList<>(hits.size());
+            for (Hit hit : hits) {
+                JournalSegment segment = hit.segment();
+                int i = hit.index();
+                rows.add(new Keyed<>(new Cursor(hit.time(), hit.id()), new HistoryRow(
+                        dictionary.action(segment.action(i)),
+                        dictionary.material(segment.material(i)),
+                        segment.amount(i),
+                        dictionary.player(segment.player(i)),
+                        hit.time()
+                )));
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private record Hit(JournalSegment segment, int index, long time, long id) {
+    }
+
+    private static final Comparator<Hit> NEWEST_FIRST =
+            Comparator.comparingLong(Hit::time).thenComparingLong(Hit::id).reversed();
+
+    @FunctionalInterface
+    private interface SegmentScan {
+        void scan(JournalSegment segment, RecordVisitor visitor);
+    }
+
+    /**
+     * Newest {@code limit} records at or after {@code since} and before the cursor, ordered by (time, id).
+     * All matches of a segment are collected, since a late record may sit anywhere in it;
+     * a segment is skipped once its newest record cannot make the page.
+     */
+    private static List<Hit> newest(Journal journal, long since, Cursor after, int limit, SegmentScan scan) {
+        List<Hit> hits = new ArrayList<>();
+        for (JournalSegment segment : journal.newestFirst()) {
+            // Межі сегмента не впорядковані строго, тож пропуск, а не кінець пошуку
+            if (segment.maxTime() < since || segment.minTime() > after.time()) continue;
+            if (hits.size() >= limit && segment.maxTime() < hits.get(limit - 1).time()) continue;
+
+            scan.scan(segment, i -> {
+                long time = segment.time(i);
+                long id = segment.id(i);
+                if (time >= since && before(time, id, after)) hits.add(new Hit(segment, i, time, id));
+            });
+            hits.sort(NEWEST_FIRST);
+            if (hits.size() > limit) hits.subList(limit, hits.size()).clear();
+        }
+        return hits;
+    }
+
+    private static boolean before(long time, long id, Cursor after) {
+        return time < after.time() || (time == after.time() && id < after.id());
+    }
+
+    /**
+     * Follows the chunk links of every chunk in the square.
+     */
+    @Override
+    public List<AreaRow> area(Partitions.Kind kind, String world, int cx, int cz, int radius, long since) {
+        lock.readLock().lock();
+        try {
+            Integer w = dictionary.worldId(world);
+            if (w == null) return List.of();
+
+            // (гравець, дія, матеріал) -> сума
+            Map<List<Integer>, long[]> totals = new HashMap<>();
+            for (JournalSegment segment : journal(kind).newestFirst()) {
+                // Старіший сегмент може мати пізні записи, новіші за since
+                if (segment.maxTime() < since) continue;
+
+                forEachInSquare(segment, w, cx, cz, radius, i -> {
+                    if (segment.time(i) < since) return;
+                    long amount = kind == Partitions.Kind.BLOCK ? 1 : segment.amount(i);
+                    totals.computeIfAbsent(List.of(segment.player(i), segment.action(i), segment.material(i)), k -> new long[1])[0] += amount;
+                });
+            }
+
+            List<AreaRow> rows = new ArrayList<>(totals.size());
+            for (Map.Entry<List<Integer>, long[]> total : totals.entrySet()) {
+                List<Integer> key = total.getKey();
+                rows.add(new AreaRow(
+                        dictionary.player(key.get(0)),
+                        dictionary.action(key.get(1)),
+                        dictionary.material(key.get(2)),
+                        total.getValue()[0]
+                ));
+            }
+            return AreaRow.sum(rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Follows the player links of every segment.
+     */
+    @Override
+    public List<ActivityLookup.Row> activity(Partitions.Kind kind, String player, long since, Cursor after, int limit) {
+        lock.readLock().lock();
+        try {
+            int k = kind.ordinal();
+            List<ActivityLookup.Row> rows = new ArrayList<>();
+
+            // Старі записи без UUID і записи з UUID мають різні id при тому самому імені
+            for (int playerId : dictionary.playerIds(player)) {
+                List<Hit> hits = newest(journal(kind), since, after, limit, (segment, visitor) -> {
+                    for (int i = segment.playerHead(playerId); i >= 0; i = segment.prevByPlayer(i)) {
+                        visitor.visit(i);
+                    }
+                });
+
+                for (Hit hit : hits) {
+                    JournalSegment segment = hit.segment();
+                    int i = hit.index();
+                    rows.add(new ActivityLookup.Row(
+                            new ActivityLookup.Cursor(hit.time(), k, hit.id()),
+                            dictionary.action(segment.action(i)),
+                            dictionary.material(segment.material(i)),
+                            segment.amount(i),
+                            dictionary.world(segment.world(i)),
+                            segment.pos(i)
+                    ));
+                }
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<RollbackJob.Row> rollbackRows(String world, int cx, int cz, int radius, long since,
+                                              @Nullable String player, int limit) {
+        lock.readLock().lock();
+        try {
+            Integer w = dictionary.worldId(world);
+            if (w == null) return List.of();
+            List<Integer> players = player == null ? null : dictionary.playerIds(player);
+
+            List<Hit> hits = newest(blocks, since, Cursor.START, limit, (segment, visitor) ->
+                    forEachInSquare(segment, w, cx, cz, radius, i -> {
+                        if (players == null || players.contains(segment.player(i))) visitor.visit(i);
+                    }));
+
+            List<RollbackJob.Row> rows = new ArrayList<>(hits.size());
+            for (Hit hit : hits) {
+                JournalSegment segment = hit.segment();
+                int i = hit.index();
+                rows.add(new RollbackJob.Row(
+                        segment.pos(i),
+                        dictionary.action(segment.action(i)),
+                        dictionary.material(segment.material(i))
+                ));
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(int index);
+    }
+
+    // Записи світу в квадраті навколо (cx, cz), на всю висоту
+    private static void forEachInSquare(JournalSegment segment, int world, int cx, int cz, int radius, RecordVisitor visitor) {
+        for (int chunkX = (cx - radius) >> 4; chunkX <= (cx + radius) >> 4; chunkX++) {
+            for (int chunkZ = (cz - radius) >> 4; chunkZ <= (cz + radius) >> 4; chunkZ++) {
+                long chunk = PackedPos.pack(chunkX << 4, 0, chunkZ << 4);
+
+                for (int i = segment.chunkHead(world, chunk); i >= 0; i = segment.prevInChunk(i)) {
+                    if (segment.world(i) != world) continue;
+                    long pos = segment.pos(i);
+                    int x = PackedPos.x(pos);
+                    int z = PackedPos.z(pos);
+                    if (x >> 4 != chunkX || z >> 4 != chunkZ) continue;
+                    if (x < cx - radius || x > cx + radius || z < cz - radius || z > cz + radius) continue;
+                    visitor.visit(i);
+                }
+            }
+        }
+    }
+
+    // Сегменти займають повний розмір з моменту створення
+    private void refreshSize() {
+        sizeBytes = blocks.sizeBytes() + containers.sizeBytes() + dictionary.sizeBytes();
+    }
+
+    @Override
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    @Override
+    public int readerCount() {
+        return readerCount;
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            blocks.close();
+            containers.close();
+            dictionary.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Journal close error", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
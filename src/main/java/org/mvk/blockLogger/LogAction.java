@@ -0,0 +1,55 @@
+package org.mvk.blockLogger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stable action codes stored in the {@code actions} dictionary.
+ * Localized text comes from messages.yml only when a row is displayed.
+ */
+public enum LogAction {
+    PLACE("place", "log_block_place", ""),
+    BREAK("break", "log_block_break", ""),
+    EXPLODE("explode", "log_block_explode", ""),
+    TAKE("take", "log_container_take", ""),
+    TAKE_STACK("take_stack", "log_container_take", " (Stack)"),
+    PUT("put", "log_container_put", ""),
+    PUT_DRAG("put_drag", "log_container_put", " (Drag)");
+
+    private static final Map<String, LogAction> BY_CODE = new HashMap<>();
+
+    static {
+        for (LogAction action : values()) {
+            BY_CODE.put(action.code, action);
+        }
+    }
+
+    private final String code;
+    private final String messageKey;
+    private final String suffix;
+
+    LogAction(String code, String messageKey, String suffix) {
+        this.code = code;
+        this.messageKey = messageKey;
+        this.suffix = suffix;
+    }
+
+    public String code() {
+        return code;
+    }
+
+    public String messageKey() {
+        return messageKey;
+    }
+
+    public String suffix() {
+        return suffix;
+    }
+
+    /**
+     * @return matching action, or null for rows migrated from the old text schema
+     */
+    public static LogAction fromCode(String code) {
+        return BY_CODE.get(code);
+    }
+}
@@ -0,0 +1,58 @@
+package org.mvk.blockLogger;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of a logged action, captured on the main thread
+ * and handed over to the {@link LogWriter}.
+ */
+public sealed interface LogEntry permits LogEntry.BlockEntry, LogEntry.ContainerEntry,
+        LogEntry.ExplosionEntry, LogEntry.ContainerSessionEntry {
+
+    String world();
+
+    long time();
+
+    /**
+     * @param playerId null for non-player sources such as explosions
+     */
+    record BlockEntry(String world, int x, int y, int z,
+                      LogAction action, String block, UUID playerId, String player,
+                      long time) implements LogEntry {
+    }
+
+    /**
+     * @param itemData {@link ItemSnapshot} of the stack, null for a plain item without meta
+     */
+    record ContainerEntry(String world, int x, int y, int z,
+                          LogAction action, String item, @Nullable byte[] itemData, int amount,
+                          UUID playerId, String player,
+                          long time) implements LogEntry {
+    }
+
+    /**
+     * Whole blast as one entry, written as a single multi-row batch.
+     *
+     * @param positions {@link PackedPos} of every destroyed block
+     * @param materials block types, same order as positions
+     */
+    record ExplosionEntry(String world, long[] positions, String[] materials,
+                          UUID playerId, String source,
+                          long time) implements LogEntry {
+    }
+
+    /**
+     * Net result of one container session, written as a single batch.
+     *
+     * @param materials item types that changed
+     * @param itemData  {@link ItemSnapshot} per material, null elements for plain items
+     * @param deltas    per-item change, positive = put, negative = taken
+     */
+    record ContainerSessionEntry(String world, int x, int y, int z,
+                                 String[] materials, byte[][] itemData, int[] deltas,
+                                 UUID playerId, String player,
+                                 long time) implements LogEntry {
+    }
+}
@@ -0,0 +1,607 @@
+package org.mvk.blockLogger;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dedicated writer thread. Listeners only enqueue {@link LogEntry} records,
+ * the thread groups them into transactions by count or by time window
+ * and hands each batch to the {@link StorageEngine}.
+ * Retention purges run on the same thread between batches.
+ * <p>
+ * The queue is bounded and {@link #submit(LogEntry)} never waits: when storage falls behind,
+ * entries go to a small in-memory buffer that a separate thread appends to a {@link SpillFile},
+ * so the game thread never does file I/O. They are written from the file once the queue is empty.
+ * A batch that storage rejects, e.g. while a backup holds the database lock, is retried
+ * with a growing pause. On shutdown storage gets no further attempts: the batch in progress and
+ * the rest of the queue go to the spill file and are written on the next start.
+ * <p>
+ * Entries reach storage out of submit order (spilled entries wait for the queue, a lost spill
+ * append completes early), so {@link #committed()} tracks every sequence number, not a count.
+ */
+public class LogWriter implements Runnable {
+
+    /**
+     * Entry with the sequence number {@link #submit(LogEntry)} returned for it.
+     */
+    private record Sequenced(long seq, LogEntry entry) {
+    }
+
+    private static final Sequenced SHUTDOWN = new Sequenced(-1, null);
+    private static final Sequenced PURGE = new Sequenced(-2, null);
+    private static final long MAX_RETRY_MS = 30_000L;
+    // Записи на шляху до файлу; довше - диск не встигає, і вони губляться
+    private static final int SPILL_BUFFER = 16_384;
+
+    private final StorageEngine storage;
+    private final Logger logger;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    private final int capacity;
+    private final BlockingQueue<Sequenced> queue;
+    private final Thread thread;
+    private volatile boolean accepting = true;
+    // Відкривається в shutdown(): паузи між спробами і очікування черги обриваються
+    private final CountDownLatch stopping = new CountDownLatch(1);
+    private volatile SpillFile spill;
+    private final BlockingQueue<Sequenced> spillBuffer = new LinkedBlockingQueue<>(SPILL_BUFFER);
+    // Номери записів файлу в тому ж порядку, проміжками {перший, останній}; під власним монітором
+    private final ArrayDeque<long[]> fileSeqs = new ArrayDeque<>();
+    private Thread appender;
+    // Записи поза чергою: у буфері або у файлі, ще не записані в базу
+    private final AtomicInteger spilling = new AtomicInteger();
+    private volatile boolean spillFailed;
+    private final LongAdder dropped = new LongAdder();
+
+    private long submitted;
+    private final Object commitLock = new Object();
+    private volatile long committed;
+    // Завершені проміжки номерів після committed + 1: перший -> останній; під commitLock
+    private final TreeMap<Long, Long> completed = new TreeMap<>();
+    private volatile LongConsumer commitListener;
+    private volatile Metrics metrics;
+
+    // 0 - зберігати назавжди
+    private volatile long blockRetentionMs;
+    private volatile long containerRetentionMs;
+
+    /**
+     * @param capacity entries kept in memory; the rest goes to the spill file, or is dropped without one
+     */
+    public LogWriter(StorageEngine storage, Logger logger, int batchSize, long flushIntervalMs, int capacity) {
+        this.storage = storage;
+        this.logger = logger;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1L, flushIntervalMs);
+        this.capacity = Math.max(this.batchSize, capacity);
+        this.queue = new LinkedBlockingQueue<>(this.capacity);
+        this.thread = new Thread(this, "BlockLogger-Writer");
+        this.thread.setDaemon(false);
+    }
+
+    /**
+     * Overflow file; entries left in it by the previous run are written first. Call before {@link #start()}.
+     */
+    public synchronized void spill(SpillFile spill) {
+        this.spill = spill;
+        // Залишок з минулого запуску отримує перші номери
+        if (spill.pending() > 0) {
+            fileSeqs.add(new long[]{submitted + 1, submitted + spill.pending()});
+        }
+        submitted += spill.pending();
+        spilling.set(spill.pending());
+        if (spill.pending() > 0) {
+            logger.info("Replaying " + spill.pending() + " spilled log entries");
+        }
+        appender = new Thread(this::appendSpilled, "BlockLogger-Spill");
+    }
+
+    public void start() {
+        thread.start();
+        if (appender != null) appender.start();
+    }
+
+    /**
+     * Never blocks and never touches the disk: a full queue sends the entry to the spill buffer.
+     *
+     * @return sequence number of the entry, or -1 if it was dropped
+     */
+    public synchronized long submit(LogEntry entry) {
+        if (!accepting) {
+            logger.warning("Log entry submitted after shutdown, dropped: " + entry);
+            return -1;
+        }
+        Sequenced sequenced = new Sequenced(submitted + 1, entry);
+        // Поки є записи поза чергою, нові теж ідуть туди - інакше вони обженуть старіші
+        if (spilling.get() > 0 || !queue.offer(sequenced)) {
+            if (spill == null) {
+                warnOnce("Log queue is full (" + capacity + ") and there is no spill file, dropping entries", null);
+                dropped.increment();
+                return -1;
+            }
+            spilling.incrementAndGet();
+            if (!spillBuffer.offer(sequenced)) {
+                spilling.decrementAndGet();
+                warnOnce("Spill buffer is full (" + SPILL_BUFFER + "), the disk is too slow, dropping entries", null);
+                dropped.increment();
+                return -1;
+            }
+        }
+        return ++submitted;
+    }
+
+    /**
+     * Spill thread: moves entries from the buffer to the file until {@link #shutdown()}.
+     */
+    private void appendSpilled() {
+        SpillFile file = spill;
+        List<Sequenced> entries = new ArrayList<>();
+        while (true) {
+            try {
+                entries.add(spillBuffer.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            spillBuffer.drainTo(entries);
+
+            boolean stop = entries.removeIf(entry -> entry == SHUTDOWN);
+            int written;
+            try {
+                written = append(file, entries);
+                if (written == entries.size()) {
+                    spillFailed = false;
+                } else {
+                    warnOnce("Spill file is full, dropping entries", null);
+                }
+            } catch (IOException e) {
+                warnOnce("Spill file write error, dropping entries", e);
+                written = 0;
+            }
+
+            List<Sequenced> lost = entries.subList(written, entries.size());
+            if (!lost.isEmpty()) {
+                // Номери вже видані - втрачені записи теж мають бути зараховані
+                dropped.add(lost.size());
+                spilling.addAndGet(-lost.size());
+                complete(lost, false);
+            }
+            entries.clear();
+            if (stop) break;
+        }
+    }
+
+    /**
+     * Appends to the spill file and remembers the sequence numbers of what was written, in file order.
+     *
+     * @return how many of the first entries were written
+     */
+    private int append(SpillFile file, List<Sequenced> entries) throws IOException {
+        synchronized (fileSeqs) {
+            List<LogEntry> plain = new ArrayList<>(entries.size());
+            for (Sequenced entry : entries) plain.add(entry.entry());
+            int written = file.append(plain);
+            for (Sequenced entry : entries.subList(0, written)) {
+                long[] last = fileSeqs.peekLast();
+                if (last != null && last[1] + 1 == entry.seq()) {
+                    last[1] = entry.seq();
+                } else {
+                    fileSeqs.addLast(new long[]{entry.seq(), entry.seq()});
+                }
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Removes the sequence numbers of the {@code count} oldest file records.
+     */
+    private List<long[]> pollFileSeqs(int count) {
+        List<long[]> ranges = new ArrayList<>();
+        synchronized (fileSeqs) {
+            while (count > 0 && !fileSeqs.isEmpty()) {
+                long[] first = fileSeqs.peekFirst();
+                long size = first[1] - first[0] + 1;
+                if (size <= count) {
+                    ranges.add(fileSeqs.pollFirst());
+                    count -= (int) size;
+                } else {
+                    ranges.add(new long[]{first[0], first[0] + count - 1});
+                    first[0] += count;
+                    count = 0;
+                }
+            }
+        }
+        return ranges;
+    }
+
+    // Одне повідомлення на серію втрат, а не на кожен запис
+    private void warnOnce(String message, Exception e) {
+        if (!spillFailed) logger.log(Level.SEVERE, message, e);
+        spillFailed = true;
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Entries waiting in the spill buffer or file, 0 without one.
+     */
+    public int spilled() {
+        return spilling.get();
+    }
+
+    public long spillBytes() {
+        SpillFile file = spill;
+        return file == null ? 0 : file.sizeBytes();
+    }
+
+    public long spilledTotal() {
+        SpillFile file = spill;
+        return file == null ? 0 : file.spilled();
+    }
+
+    /**
+     * Entries lost because both the queue and the spill file were full or failing.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Forces the spill file to disk; called periodically off the main thread.
+     */
+    public void forceSpill() {
+        SpillFile file = spill;
+        if (file == null || file.pending() == 0) return;
+        try {
+            file.force();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Spill file sync error", e);
+        }
+    }
+
+    /**
+     * @return highest sequence number such that it and every entry before it are written or lost
+     */
+    public long committed() {
+        return committed;
+    }
+
+    /**
+     * Called with {@link #committed()} whenever it grows, on the writer thread
+     * or, for entries lost on the way to the spill file, on the spill thread.
+     */
+    public void onCommit(LongConsumer listener) {
+        this.commitListener = listener;
+    }
+
+    /**
+     * Batch latency and written/failed entry counts go here.
+     */
+    public void metrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * How long rows are kept. SQLite drops whole partitions once their newest possible row
+     * is older than this, so rows may live up to one partition span longer.
+     *
+     * @param blockMs     retention for block rows, 0 to keep forever
+     * @param containerMs retention for container rows, 0 to keep forever
+     */
+    public void retention(long blockMs, long containerMs) {
+        this.blockRetentionMs = blockMs;
+        this.containerRetentionMs = containerMs;
+    }
+
+    /**
+     * Asks the writer thread to drop expired partitions after the current batch.
+     */
+    public synchronized void requestPurge() {
+        if (!accepting) return;
+        // Повна черга - наступна спроба через годину
+        queue.offer(PURGE);
+    }
+
+    /**
+     * Stops accepting new entries. Waits at most for the storage call already in progress:
+     * everything not written by then is moved to the spill file for the next start.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (!accepting) return;
+            accepting = false;
+        }
+        stopping.countDown();
+
+        try {
+            // Лише щоб розбудити потік запису; повна черга і так не дає йому чекати
+            queue.offer(SHUTDOWN, flushIntervalMs, TimeUnit.MILLISECONDS);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Interrupted while flushing log queue, " + queue.size() + " entries pending");
+        }
+
+        SpillFile file = spill;
+        if (file == null) return;
+        // Буфер дописується у файл до кінця
+        try {
+            spillBuffer.put(SHUTDOWN);
+            appender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Interrupted while writing the spill buffer, " + spillBuffer.size() + " entries lost");
+        }
+        try {
+            if (file.pending() > 0) {
+                logger.info(file.pending() + " log entries left in the spill file, they will be written on next start");
+            }
+            file.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Spill file close error", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Sequenced> batch = new ArrayList<>(batchSize);
+        boolean stop = false;
+
+        while (!stop) {
+            boolean purge = false;
+            try {
+                if (stopping.getCount() == 0) break;
+
+                // Записи у файлі новіші за ті, що в черзі, тож файл - лише коли черга порожня
+                if (queue.isEmpty() && spill != null && spill.pending() > 0) {
+                    replaySpill();
+                    continue;
+                }
+
+                Sequenced first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                if (first == SHUTDOWN) break;
+                if (first == PURGE) {
+                    purge();
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) break;
+
+                    Sequenced next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    if (next == SHUTDOWN) {
+                        stop = true;
+                        break;
+                    }
+                    if (next == PURGE) {
+                        purge = true;
+                        continue;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                stop = true;
+            }
+
+            write(batch, stop);
+            batch.clear();
+            if (purge) purge();
+        }
+
+        // Все, що залишилось у черзі після зупинки
+        queue.drainTo(batch);
+        batch.removeIf(entry -> entry == SHUTDOWN || entry == PURGE);
+        flushOnStop(batch);
+    }
+
+    /**
+     * Writes one batch from the spill file. A failed batch stays in the file and is retried,
+     * so a database that is locked for a while loses nothing.
+     */
+    private void replaySpill() throws InterruptedException {
+        SpillFile file = spill;
+        List<LogEntry> batch;
+        try {
+            batch = file.peek(batchSize);
+        } catch (IOException e) {
+            List<long[]> lost;
+            synchronized (fileSeqs) {
+                logger.log(Level.SEVERE, "Spill file read error, " + file.pending() + " entries lost", e);
+                try {
+                    file.discard();
+                } catch (IOException ex) {
+                    logger.log(Level.SEVERE, "Spill file reset error", ex);
+                }
+                lost = new ArrayList<>(fileSeqs);
+                fileSeqs.clear();
+            }
+            long count = 0;
+            for (long[] range : lost) count += range[1] - range[0] + 1;
+            spilling.addAndGet((int) -count);
+            complete(lost, count, false);
+            return;
+        }
+
+        if (!attempt(batch)) {
+            stopping.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        try {
+            file.consume();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Spill file update error", e);
+        }
+        spilling.addAndGet(-batch.size());
+        complete(pollFileSeqs(batch.size()), batch.size(), true);
+    }
+
+    private void complete(List<Sequenced> entries, boolean ok) {
+        List<long[]> ranges = new ArrayList<>();
+        for (Sequenced entry : entries) {
+            long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last[1] + 1 == entry.seq()) {
+                last[1] = entry.seq();
+            } else {
+                ranges.add(new long[]{entry.seq(), entry.seq()});
+            }
+        }
+        complete(ranges, entries.size(), ok);
+    }
+
+    /**
+     * Marks sequence numbers as no longer waiting; committed moves only over a gapless prefix.
+     * Called from the writer thread and the spill thread.
+     */
+    private void complete(List<long[]> ranges, long count, boolean ok) {
+        Metrics m = metrics;
+        if (m != null) (ok ? m.entriesCommitted : m.entriesFailed).add(count);
+        synchronized (commitLock) {
+            long before = committed;
+            for (long[] range : ranges) completed.put(range[0], range[1]);
+
+            long next = committed;
+            Map.Entry<Long, Long> first;
+            while ((first = completed.firstEntry()) != null && first.getKey() <= next + 1) {
+                next = Math.max(next, completed.pollFirstEntry().getValue());
+            }
+            committed = next;
+
+            LongConsumer listener = commitListener;
+            if (listener != null && next != before) listener.accept(next);
+        }
+    }
+
+    private void purge() {
+        long now = System.currentTimeMillis();
+        try {
+            if (blockRetentionMs > 0) {
+                storage.purge(Partitions.Kind.BLOCK, now - blockRetentionMs);
+            }
+            if (containerRetentionMs > 0) {
+                storage.purge(Partitions.Kind.CONTAINER, now - containerRetentionMs);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Retention purge error", e);
+        }
+    }
+
+    /**
+     * Writes one batch from the queue and retries it until storage accepts it; newer entries
+     * meanwhile fill the queue and then the spill file.
+     *
+     * @param stop the plugin is shutting down: the batch goes to the spill file, storage is not called
+     */
+    private void write(List<Sequenced> batch, boolean stop) {
+        if (batch.isEmpty()) return;
+        if (stop) {
+            flushOnStop(batch);
+            return;
+        }
+
+        List<LogEntry> entries = new ArrayList<>(batch.size());
+        for (Sequenced entry : batch) entries.add(entry.entry());
+
+        long pause = flushIntervalMs;
+        while (!attempt(entries)) {
+            logger.warning("Batch of " + batch.size() + " entries not written, retrying in " + pause + " ms");
+            try {
+                if (stopping.await(pause, TimeUnit.MILLISECONDS)) {
+                    flushOnStop(batch);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                spillBack(batch);
+                return;
+            }
+            pause = Math.min(pause * 2, MAX_RETRY_MS);
+        }
+        complete(batch, true);
+    }
+
+    /**
+     * After {@link #shutdown()} storage is not waited for: entries go to the spill file.
+     * Without one they get a single attempt.
+     */
+    private void flushOnStop(List<Sequenced> batch) {
+        if (batch.isEmpty()) return;
+        if (spill != null) {
+            spillBack(batch);
+            return;
+        }
+
+        List<LogEntry> entries = new ArrayList<>(batch.size());
+        for (Sequenced entry : batch) entries.add(entry.entry());
+        if (attempt(entries)) {
+            complete(batch, true);
+        } else {
+            logger.severe(batch.size() + " log entries could not be written and are lost");
+            complete(batch, false);
+        }
+    }
+
+    private boolean attempt(List<LogEntry> batch) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            ok = storage.write(batch);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Batch write error (" + batch.size() + " entries)", e);
+        } finally {
+            Metrics m = metrics;
+            if (m != null) (ok ? m.batchCommitted : m.batchFailed).stop(start);
+        }
+        return ok;
+    }
+
+    /**
+     * Keeps a batch that could not be written for the next start. These entries are older than
+     * what is already in the file; every row carries its own time, so storage still orders them right.
+     */
+    private void spillBack(List<Sequenced> batch) {
+        SpillFile file = spill;
+        int kept = 0;
+        if (file != null) {
+            try {
+                kept = append(file, batch);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Spill file write error", e);
+            }
+        }
+        if (kept > 0) {
+            logger.warning(kept + " unwritten log entries moved to the spill file");
+        }
+        if (kept < batch.size()) {
+            logger.severe((batch.size() - kept) + " log entries could not be written and are lost");
+            // Збережені у файлі зарахує наступний запуск, втрачені - вже
+            complete(batch.subList(kept, batch.size()), false);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.mvk.blockLogger;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable snapshot of messages.yml, compiled on load and on {@code /bl reload}.
+ * Plain messages are parsed once; messages with {@code %placeholders%} are turned into
+ * MiniMessage placeholder tags once and their rendered results are memoized per arguments.
+ * Safe to use from lookup threads.
+ */
+public final class Messages {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("%([a-z_]+)%");
+    private static final int TEMPLATE_CACHE_SIZE = 512;
+
+    private final MiniMessage mm;
+    private final Map<String, String> raw = new HashMap<>();
+    private final Map<String, Component> components = new HashMap<>();
+    private final Map<String, Template> templates = new HashMap<>();
+    private final Map<LogAction, Component> actions = new EnumMap<>(LogAction.class);
+    private final Template legacyActions;
+
+    private final OutputType outputType;
+    private final boolean containerGui;
+    private final boolean sessionLogging;
+
+    private Messages(ConfigurationSection config, MiniMessage mm) {
+        this.mm = mm;
+
+        for (String path : config.getKeys(true)) {
+            if (!config.isString(path)) continue;
+
+            String value = config.getString(path);
+            raw.put(path, value);
+
+            Matcher matcher = PLACEHOLDER.matcher(value);
+            if (matcher.find()) {
+                templates.put(path, new Template(mm, value));
+            } else {
+                components.put(path, mm.deserialize(value));
+            }
+        }
+
+        for (LogAction action : LogAction.values()) {
+            actions.put(action, mm.deserialize(raw(action.messageKey()) + action.suffix()));
+        }
+        // Старі записи зберігають дію як MiniMessage-рядок
+        legacyActions = new Template(mm, "%action%") {
+            @Override
+            Component parse(String[] values) {
+                return mm.deserialize(values[1]);
+            }
+        };
+
+        outputType = switch (config.getString("output.type", "chatmessage").toLowerCase()) {
+            case "actionbar" -> OutputType.ACTIONBAR;
+            case "itemdescription" -> OutputType.ITEMDESCRIPTION;
+            case "combined" -> OutputType.COMBINED;
+            default -> OutputType.CHAT;
+        };
+        containerGui = config.getString("container_output_mode", "GUI").equalsIgnoreCase("GUI");
+        sessionLogging = config.getString("container_logging", "click").equalsIgnoreCase("session");
+    }
+
+    public static Messages compile(ConfigurationSection config, MiniMessage mm) {
+        return new Messages(config, mm);
+    }
+
+    public String raw(String path) {
+        return raw.getOrDefault(path, "Missing message: " + path);
+    }
+
+    public Component get(String path) {
+        Component component = components.get(path);
+        if (component != null) return component;
+
+        Template template = templates.get(path);
+        if (template != null) return template.render();
+
+        return mm.deserialize("<red>Missing: " + path);
+    }
+
+    /**
+     * @param replacements pairs of placeholder and value, e.g. {@code "%player%", name}
+     */
+    public Component format(String path, String... replacements) {
+        Template template = templates.get(path);
+        if (template == null) return get(path);
+        return template.render(replacements);
+    }
+
+    /**
+     * Localized action text for a stored action code.
+     */
+    public Component action(String code) {
+        LogAction action = LogAction.fromCode(code);
+        if (action != null) return actions.get(action);
+        return legacyActions.render("%action%", code);
+    }
+
+    public OutputType outputType() {
+        return outputType;
+    }
+
+    public boolean containerGui() {
+        return containerGui;
+    }
+
+    public boolean sessionLogging() {
+        return sessionLogging;
+    }
+
+    /**
+     * Message with {@code %name%} placeholders, converted once to {@code <name>} tags.
+     */
+    private static class Template {
+
+        private final MiniMessage mm;
+        private final String source;
+        private final Map<List<String>, Component> rendered;
+
+        Template(MiniMessage mm, String raw) {
+            this.mm = mm;
+            this.source = PLACEHOLDER.matcher(raw).replaceAll("<$1>");
+            this.rendered = new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<String>, Component> eldest) {
+                    return size() > TEMPLATE_CACHE_SIZE;
+                }
+            };
+        }
+
+        Component render(String... replacements) {
+            List<String> key = Arrays.asList(replacements);
+            synchronized (rendered) {
+                Component cached = rendered.get(key);
+                if (cached != null) return cached;
+            }
+
+            Component component = parse(replacements);
+            synchronized (rendered) {
+                rendered.put(key, component);
+            }
+            return component;
+        }
+
+        Component parse(String[] values) {
+            TagResolver[] resolvers = new TagResolver[values.length / 2];
+            for (int i = 0; i + 1 < values.length; i += 2) {
+                String name = values[i].replace("%", "");
+                resolvers[i / 2] = Placeholder.unparsed(name, values[i + 1]);
+            }
+            return mm.deserialize(source, resolvers);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.mvk.blockLogger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms of the write and lookup paths.
+ * Recording is lock-free and safe from any thread, so it can sit on event handlers;
+ * {@link #writeTo(Path)} renders everything in the Prometheus text format
+ * for the node exporter textfile collector.
+ */
+public class Metrics {
+
+    // Межі кошиків у секундах: від мікросекунд (події в головному потоці) до секунд (повільні пошуки)
+    private static final double[] BUCKETS = {
+            0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5
+    };
+    private static final long[] BOUNDS_NANOS = new long[BUCKETS.length];
+    private static final String[] BOUNDS_TEXT = new String[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BOUNDS_NANOS[i] = Math.round(BUCKETS[i] * 1_000_000_000L);
+            BOUNDS_TEXT[i] = BigDecimal.valueOf(BUCKETS[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private interface Family {
+        String name();
+
+        String help();
+    }
+
+    /**
+     * Monotonic counter.
+     */
+    public static final class Counter {
+        private final String label;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String label) {
+            this.label = label;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Latency histogram with fixed buckets.
+     */
+    public static final class Timer {
+        private final String name;
+        private final String label;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        private Timer(String name, String label) {
+            this.name = name;
+            this.label = label;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * @param startNanos value of {@link System#nanoTime()} taken before the measured call
+         */
+        public void stop(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public void record(long nanos) {
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) i++;
+            buckets[i].increment();
+            sumNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        /**
+         * Short name for chat, e.g. {@code lookup block_history}.
+         */
+        public String name() {
+            return name;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) count += bucket.sum();
+            return count;
+        }
+
+        public double meanMillis() {
+            long count = count();
+            return count == 0 ? 0 : sumNanos.sum() / 1e6 / count;
+        }
+
+        public double maxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /**
+         * Upper bound of the bucket that holds the quantile; a histogram knows nothing finer.
+         * Past the last bucket the observed maximum is returned.
+         */
+        public double quantileMillis(double quantile) {
+            long count = count();
+            if (count == 0) return 0;
+
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) return BUCKETS[i] * 1000;
+            }
+            return maxMillis();
+        }
+    }
+
+    private record Sampled(String name, String help, String type, LongSupplier value) implements Family {
+    }
+
+    private record TimerFamily(String name, String help, String labelName, List<Timer> timers) implements Family {
+    }
+
+    private record CounterFamily(String name, String help, String labelName, List<Counter> counters) implements Family {
+    }
+
+    private final List<Object> families = new ArrayList<>();
+
+    // ===== EVENTS =====
+    private final TimerFamily events = timers("blocklogger_event_seconds",
+            "Main thread time spent logging one event", "path");
+    public final Timer logBlock = timer(events, "block");
+    public final Timer logContainer = timer(events, "container");
+    public final Timer logExplosion = timer(events, "explosion");
+
+    private final CounterFamily logged = counters("blocklogger_logged_rows_total",
+            "Rows queued for writing", "kind");
+    public final Counter loggedBlocks = counter(logged, "block");
+    public final Counter loggedContainer = counter(logged, "container");
+    public final Counter loggedExplosion = counter(logged, "explosion");
+
+    // ===== LOOKUPS =====
+    private final TimerFamily lookups = timers("blocklogger_lookup_seconds",
+            "History lookup latency, including the cache", "source");
+    public final Timer blockHistory = timer(lookups, "block_history");
+    public final Timer containerHistory = timer(lookups, "container_history");
+    public final Timer containerPage = timer(lookups, "container_page");
+    public final Timer coreProtect = timer(lookups, "coreprotect");
+
+    private final TimerFamily gui = timers("blocklogger_gui_seconds",
+            "Main thread time spent building a GUI", "view");
+    public final Timer guiOpen = timer(gui, "container_history");
+
+    // ===== WRITER =====
+    private final TimerFamily batches = timers("blocklogger_write_batch_seconds",
+            "Time to write and commit one batch", "result");
+    public final Timer batchCommitted = timer(batches, "committed");
+    public final Timer batchFailed = timer(batches, "failed");
+
+    private final CounterFamily written = counters("blocklogger_written_entries_total",
+            "Log entries taken off the queue by the writer", "result");
+    public final Counter entriesCommitted = counter(written, "committed");
+    public final Counter entriesFailed = counter(written, "failed");
+
+    private TimerFamily timers(String name, String help, String labelName) {
+        TimerFamily family = new TimerFamily(name, help, labelName, new ArrayList<>());
+        families.add(family);
+        return family;
+    }
+
+    private Timer timer(TimerFamily family, String label) {
+        String group = family.name().replace("blocklogger_", "").replace("_seconds", "");
+        Timer timer = new Timer(group + " " + label, label);
+        family.timers().add(timer);
+        return timer;
+    }
+
+    private CounterFamily counters(String name, String help, String labelName) {
+        CounterFamily family = new CounterFamily(name, help, labelName, new ArrayList<>());
+        families.add(family);
+        return family;
+    }
+
+    private Counter counter(CounterFamily family, String label) {
+        Counter counter = new Counter(label);
+        family.counters().add(counter);
+        return counter;
+    }
+
+    /**
+     * Value read when metrics are rendered, e.g. queue length or database size.
+     */
+    public synchronized void gauge(String name, String help, LongSupplier value) {
+        families.add(new Sampled(name, help, "gauge", value));
+    }
+
+    /**
+     * Monotonic value kept elsewhere, e.g. cache hits.
+     */
+    public synchronized void counter(String name, String help, LongSupplier value) {
+        families.add(new Sampled(name, help, "counter", value));
+    }
+
+    /**
+     * Every histogram, in registration order, for {@code /bl stats}.
+     */
+    public List<Timer> timers() {
+        List<Timer> result = new ArrayList<>();
+        for (Object family : snapshot()) {
+            if (family instanceof TimerFamily timers) result.addAll(timers.timers());
+        }
+        return result;
+    }
+
+    private synchronized List<Object> snapshot() {
+        return new ArrayList<>(families);
+    }
+
+    public String prometheus() {
+        StringBuilder out = new StringBuilder(4096);
+
+        for (Object family : snapshot()) {
+            if (family instanceof TimerFamily timers) {
+                header(out, timers, "histogram");
+                for (Timer timer : timers.timers()) {
+                    String label = timers.labelName() + "=\"" + timer.label() + "\"";
+                    long cumulative = 0;
+                    for (int i = 0; i < BUCKETS.length; i++) {
+                        cumulative += timer.buckets[i].sum();
+                        line(out, timers.name() + "_bucket{" + label + ",le=\"" + BOUNDS_TEXT[i] + "\"}", cumulative);
+                    }
+                    cumulative += timer.buckets[BUCKETS.length].sum();
+                    line(out, timers.name() + "_bucket{" + label + ",le=\"+Inf\"}", cumulative);
+                    out.append(timers.name()).append("_sum{").append(label).append("} ")
+                            .append(String.format(Locale.ROOT, "%.9f", timer.sumNanos.sum() / 1e9)).append('\n');
+                    line(out, timers.name() + "_count{" + label + "}", cumulative);
+                }
+            } else if (family instanceof CounterFamily counters) {
+                header(out, counters, "counter");
+                for (Counter counter : counters.counters()) {
+                    line(out, counters.name() + "{" + counters.labelName() + "=\"" + counter.label + "\"}", counter.get());
+                }
+            } else if (family instanceof Sampled sampled) {
+                header(out, sampled, sampled.type());
+                line(out, sampled.name(), sampled.value().getAsLong());
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes {@link #prometheus()} to a temporary file and moves it over {@code file},
+     * so the collector never reads a half-written file.
+     */
+    public void writeTo(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(prometheus());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void header(StringBuilder out, Family family, String type) {
+        out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+        out.append("# TYPE ").append(family.name()).append(' ').append(type).append('\n');
+    }
+
+    private static void line(StringBuilder out, String name, long value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,607 @@
+package org.mvk.blockLogger;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MySQL / MariaDB storage for servers that outgrow a single SQLite file.
+ * <p>
+ * One writer connection for the {@link LogWriter} thread and a pool of read connections,
+ * both reopened when the server drops them. Rows are written with multi-row
+ * {@code INSERT ... VALUES (...), (...)} statements, one round trip per
+ * {@link #ROWS_PER_INSERT} rows. Coordinates are stored as plain columns, so every
+ * lookup is a range on the (world, x, z, y, time) index; retention deletes in small chunks.
+ */
+public class MysqlStorage implements StorageEngine {
+
+    private static final int ROWS_PER_INSERT = 250;
+    private static final int PURGE_CHUNK = 10_000;
+    private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+
+    private static final String BLOCK_COLUMNS = "(world, x, y, z, action, material, player, time)";
+    private static final String CONTAINER_COLUMNS = "(world, x, y, z, action, material, amount, player, time, item)";
+
+    private static final String BLOCK_HISTORY = """
+        SELECT a.code AS action, m.name AS block, p.name AS player, l.time
+        FROM {p}block_logs l
+        JOIN {p}actions a ON a.id = l.action
+        JOIN {p}materials m ON m.id = l.material
+        JOIN {p}players p ON p.id = l.player
+        WHERE l.world = (SELECT id FROM {p}worlds WHERE name = ?) AND l.x = ? AND l.z = ? AND l.y = ?
+        ORDER BY l.time DESC, l.id DESC
+        LIMIT ?
+    """;
+    // Розгорнуте (time, id) < (?, ?): так MySQL гарантовано шукає діапазоном індексу
+    private static final String CONTAINER_HISTORY = """
+        SELECT l.id, a.code AS action, m.name AS item, l.amount, p.name AS player, l.time, i.data AS item_data
+        FROM {p}container_logs l
+        JOIN {p}actions a ON a.id = l.action
+        JOIN {p}materials m ON m.id = l.material
+        JOIN {p}players p ON p.id = l.player
+        LEFT JOIN {p}items i ON i.id = l.item
+        WHERE l.world = (SELECT id FROM {p}worlds WHERE name = ?) AND l.x = ? AND l.z = ? AND l.y = ?
+          AND (l.time < ? OR (l.time = ? AND l.id < ?))
+        ORDER BY l.time DESC, l.id DESC
+        LIMIT ?
+    """;
+    private static final String AREA = """
+        SELECT p.name AS player, a.code AS action, m.name AS material, {sum} AS total
+        FROM {p}{table} l
+        JOIN {p}actions a ON a.id = l.action
+        JOIN {p}materials m ON m.id = l.material
+        JOIN {p}players p ON p.id = l.player
+        WHERE l.world = (SELECT id FROM {p}worlds WHERE name = ?)
+          AND l.x BETWEEN ? AND ?
+          AND l.z BETWEEN ? AND ?
+          AND l.time >= ?
+        GROUP BY p.name, a.code, m.name
+    """;
+    private static final String ACTIVITY = """
+        SELECT l.id, l.time, a.code AS action, m.name AS material, {amount} AS amount, w.name AS world, l.x, l.y, l.z
+        FROM {p}{table} l
+        JOIN {p}actions a ON a.id = l.action
+        JOIN {p}materials m ON m.id = l.material
+        JOIN {p}worlds w ON w.id = l.world
+        WHERE l.player = ? AND l.time >= ? AND (l.time < ? OR (l.time = ? AND l.id < ?))
+        ORDER BY l.time DESC, l.id DESC
+        LIMIT ?
+    """;
+    private static final String ROLLBACK = """
+        SELECT l.x, l.y, l.z, a.code AS action, m.name AS material
+        FROM {p}block_logs l
+        JOIN {p}actions a ON a.id = l.action
+        JOIN {p}materials m ON m.id = l.material
+        WHERE l.world = (SELECT id FROM {p}worlds WHERE name = ?)
+          AND l.x BETWEEN ? AND ?
+          AND l.z BETWEEN ? AND ?
+          AND l.time >= ?
+          AND (? IS NULL OR l.player IN (SELECT id FROM {p}players WHERE name = ?))
+        ORDER BY l.time DESC, l.id DESC
+        LIMIT ?
+    """;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String prefix;
+    private final Logger logger;
+
+    // Лише для потоку запису
+    private CachedConnection writer;
+    private Dictionaries dictionaries;
+    private final ConnectionPool readers;
+
+    private volatile long sizeBytes = -1;
+
+    /**
+     * @param url    JDBC url, e.g. {@code jdbc:mysql://localhost:3306/blocklogger}
+     * @param prefix prepended to every table name
+     */
+    public MysqlStorage(String url, String user, String password, String prefix, int readerCount, Logger logger) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.prefix = prefix;
+        this.logger = logger;
+
+        openWriter();
+        try {
+            createSchema();
+            refreshSize();
+            readers = new ConnectionPool(readerCount, this::connect, VALIDATE_TIMEOUT_SECONDS, logger);
+        } catch (SQLException e) {
+            closeQuietly(writer);
+            throw e;
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private void openWriter() throws SQLException {
+        writer = new CachedConnection(connect());
+        dictionaries = new Dictionaries(writer, Dictionaries.Dialect.MYSQL, prefix);
+    }
+
+    private String sql(String template) {
+        return template.replace("{p}", prefix);
+    }
+
+    private void createSchema() throws SQLException {
+        try (Statement st = writer.raw().createStatement()) {
+            // Точне порівняння назв світів і матеріалів, імена гравців - без урахування регістру
+            for (String[] dictionary : new String[][]{{"worlds", "name", "255"}, {"materials", "name", "128"}, {"actions", "code", "64"}}) {
+                st.execute(sql("""
+                    CREATE TABLE IF NOT EXISTS {p}%1$s (
+                        id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                        %2$s VARCHAR(%3$s) NOT NULL,
+                        UNIQUE KEY %2$s (%2$s)
+                    ) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_bin
+                """.formatted((Object[]) dictionary)));
+            }
+            st.execute(sql("""
+                CREATE TABLE IF NOT EXISTS {p}players (
+                    id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                    uuid CHAR(36) NULL,
+                    name VARCHAR(64) NOT NULL,
+                    UNIQUE KEY uuid (uuid),
+                    KEY name (name)
+                ) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_general_ci
+            """));
+            st.execute(sql("""
+                CREATE TABLE IF NOT EXISTS {p}block_logs (
+                    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                    world INT NOT NULL,
+                    x INT NOT NULL,
+                    y SMALLINT NOT NULL,
+                    z INT NOT NULL,
+                    action INT NOT NULL,
+                    material INT NOT NULL,
+                    player INT NOT NULL,
+                    time BIGINT NOT NULL,
+                    KEY pos (world, x, z, y, time),
+                    KEY player (player, time),
+                    KEY time (time)
+                ) ENGINE = InnoDB
+            """));
+            st.execute(sql("""
+                CREATE TABLE IF NOT EXISTS {p}container_logs (
+                    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                    world INT NOT NULL,
+                    x INT NOT NULL,
+                    y SMALLINT NOT NULL,
+                    z INT NOT NULL,
+                    action INT NOT NULL,
+                    material INT NOT NULL,
+                    amount INT NOT NULL,
+                    player INT NOT NULL,
+                    time BIGINT NOT NULL,
+                    item INT NOT NULL DEFAULT 0,
+                    KEY pos (world, x, z, y, time),
+                    KEY player (player, time),
+                    KEY time (time),
+                    KEY item (item)
+                ) ENGINE = InnoDB
+            """));
+            // Знімок зберігається один раз на всі однакові предмети, 0 у рядку - знімка немає
+            st.execute(sql("""
+                CREATE TABLE IF NOT EXISTS {p}items (
+                    id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                    hash BINARY(32) NOT NULL,
+                    data MEDIUMBLOB NOT NULL,
+                    UNIQUE KEY hash (hash)
+                ) ENGINE = InnoDB
+            """));
+            if (!columnExists(st, "container_logs", "item")) {
+                st.execute(sql("ALTER TABLE {p}container_logs ADD COLUMN item INT NOT NULL DEFAULT 0, ADD KEY item (item)"));
+            }
+        }
+    }
+
+    private boolean columnExists(Statement st, String table, String column) throws SQLException {
+        try (ResultSet rs = st.executeQuery(sql("""
+                SELECT 1 FROM information_schema.columns
+                WHERE table_schema = DATABASE() AND table_name = '{p}%s' AND column_name = '%s'
+            """.formatted(table, column)))) {
+            return rs.next();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "mysql";
+    }
+
+    // ===== WRITE =====
+
+    @Override
+    public boolean write(List<LogEntry> batch) {
+        try {
+            if (!writer.raw().isValid(VALIDATE_TIMEOUT_SECONDS)) {
+                logger.warning("MySQL writer connection lost, reconnecting");
+                closeQuietly(writer);
+                openWriter();
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "MySQL reconnect error, batch of " + batch.size() + " entries will be retried", e);
+            return false;
+        }
+
+        Connection connection = writer.raw();
+        try {
+            connection.setAutoCommit(false);
+
+            List<long[]> blocks = new ArrayList<>();
+            List<long[]> containers = new ArrayList<>();
+            for (LogEntry entry : batch) {
+                collect(entry, blocks, containers);
+            }
+            insert("block_logs", BLOCK_COLUMNS, 8, blocks);
+            insert("container_logs", CONTAINER_COLUMNS, 10, containers);
+
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Batch write error (" + batch.size() + " entries)", e);
+            dictionaries.clear();
+            try {
+                connection.rollback();
+            } catch (SQLException ex) {
+                logger.log(Level.SEVERE, "Rollback error", ex);
+            }
+            return false;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Auto-commit reset error", e);
+            }
+        }
+    }
+
+    // Рядки в порядку колонок BLOCK_COLUMNS / CONTAINER_COLUMNS
+    private void collect(LogEntry entry, List<long[]> blocks, List<long[]> containers) throws SQLException {
+        if (entry instanceof LogEntry.BlockEntry b) {
+            blocks.add(new long[]{
+                    dictionaries.world(b.world()), b.x(), b.y(), b.z(),
+                    dictionaries.action(b.action().code()),
+                    dictionaries.material(b.block()),
+                    dictionaries.player(b.playerId(), b.player()),
+                    b.time()
+            });
+        } else if (entry instanceof LogEntry.ContainerEntry c) {
+            containers.add(new long[]{
+                    dictionaries.world(c.world()), c.x(), c.y(), c.z(),
+                    dictionaries.action(c.action().code()),
+                    dictionaries.material(c.item()),
+                    c.amount(),
+                    dictionaries.player(c.playerId(), c.player()),
+                    c.time(),
+                    dictionaries.item(c.itemData())
+            });
+        } else if (entry instanceof LogEntry.ContainerSessionEntry c) {
+            int world = dictionaries.world(c.world());
+            int player = dictionaries.player(c.playerId(), c.player());
+            for (int i = 0; i < c.materials().length; i++) {
+                int delta = c.deltas()[i];
+                LogAction action = delta > 0 ? LogAction.PUT : LogAction.TAKE;
+                containers.add(new long[]{
+                        world, c.x(), c.y(), c.z(),
+                        dictionaries.action(action.code()),
+                        dictionaries.material(c.materials()[i]),
+                        Math.abs(delta),
+                        player,
+                        c.time(),
+                        dictionaries.item(c.itemData()[i])
+                });
+            }
+        } else if (entry instanceof LogEntry.ExplosionEntry x) {
+            int world = dictionaries.world(x.world());
+            int action = dictionaries.action(LogAction.EXPLODE.code());
+            int player = dictionaries.player(x.playerId(), x.source());
+            for (int i = 0; i < x.positions().length; i++) {
+                long pos = x.positions()[i];
+                blocks.add(new long[]{
+                        world, PackedPos.x(pos), PackedPos.y(pos), PackedPos.z(pos),
+                        action,
+                        dictionaries.material(x.materials()[i]),
+                        player,
+                        x.time()
+                });
+            }
+        }
+    }
+
+    private void insert(String table, String columns, int width, List<long[]> rows) throws SQLException {
+        for (int from = 0; from < rows.size(); from += ROWS_PER_INSERT) {
+            int count = Math.min(ROWS_PER_INSERT, rows.size() - from);
+            String insert = multiRowInsert(table, columns, width, count);
+
+            // Повні пачки - з кешу запитів, хвіст різної довжини - одноразовий
+            boolean full = count == ROWS_PER_INSERT;
+            PreparedStatement ps = full ? writer.prepare(insert) : writer.raw().prepareStatement(insert);
+            try {
+                int index = 1;
+                for (int i = from; i < from + count; i++) {
+                    for (long value : rows.get(i)) {
+                        ps.setLong(index++, value);
+                    }
+                }
+                ps.executeUpdate();
+            } finally {
+                if (!full) ps.close();
+            }
+        }
+    }
+
+    private String multiRowInsert(String table, String columns, int width, int rows) {
+        String row = "(" + "?, ".repeat(width - 1) + "?)";
+        StringBuilder sql = new StringBuilder(64 + rows * (row.length() + 2));
+        sql.append("INSERT INTO ").append(prefix).append(table).append(' ').append(columns).append(" VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Deletes in chunks with auto-commit, so the writer never holds a long transaction.
+     */
+    @Override
+    public void purge(Partitions.Kind kind, long before) throws SQLException {
+        String table = prefix + kind.prefix();
+        long deleted = 0;
+
+        PreparedStatement ps = writer.prepare("DELETE FROM " + table + " WHERE time < ? LIMIT " + PURGE_CHUNK);
+        while (true) {
+            ps.setLong(1, before);
+            int count = ps.executeUpdate();
+            deleted += count;
+            if (count < PURGE_CHUNK) break;
+        }
+
+        if (deleted > 0) {
+            logger.info("Retention: deleted " + deleted + " expired " + kind.prefix() + " rows");
+            if (kind == Partitions.Kind.CONTAINER) deleteUnusedItems();
+        }
+        refreshSize();
+    }
+
+    /**
+     * Deletes snapshots no container row refers to any more; an anti-join on the item index.
+     */
+    private void deleteUnusedItems() throws SQLException {
+        try (Statement st = writer.raw().createStatement()) {
+            int deleted = st.executeUpdate(sql("""
+                DELETE i FROM {p}items i
+                LEFT JOIN {p}container_logs l ON l.item = i.id
+                WHERE l.id IS NULL
+            """));
+            if (deleted > 0) {
+                logger.info("Retention: deleted " + deleted + " unused item snapshots");
+            }
+        } finally {
+            // Кешовані id могли належати видаленим знімкам
+            dictionaries.clearItems();
+        }
+    }
+
+    private void refreshSize() {
+        try (Statement st = writer.raw().createStatement();
+             ResultSet rs = st.executeQuery(sql("""
+                 SELECT COALESCE(SUM(data_length + index_length), 0)
+                 FROM information_schema.tables
+                 WHERE table_schema = DATABASE()
+                   AND table_name IN ('{p}worlds', '{p}materials', '{p}actions', '{p}players', '{p}block_logs', '{p}container_logs', '{p}items')
+             """))) {
+            if (rs.next()) sizeBytes = rs.getLong(1);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "MySQL size read error", e);
+        }
+    }
+
+    // ===== READ =====
+
+    @Override
+    public List<HistoryRow> blockHistory(String world, long pos, int limit) throws SQLException {
+        return readers.read(conn -> {
+            PreparedStatement ps = conn.prepare(sql(BLOCK_HISTORY));
+            ps.setString(1, world);
+            ps.setInt(2, PackedPos.x(pos));
+            ps.setInt(3, PackedPos.z(pos));
+            ps.setInt(4, PackedPos.y(pos));
+            ps.setInt(5, limit);
+
+            List<HistoryRow> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new HistoryRow(
+                            rs.getString("action"),
+                            rs.getString("block"),
+                            0,
+                            rs.getString("player"),
+                            rs.getLong("time")
+                    ));
+                }
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public List<Keyed<HistoryRow>> containerHistory(String world, long pos, Cursor after, int limit) throws SQLException {
+        return readers.read(conn -> {
+            PreparedStatement ps = conn.prepare(sql(CONTAINER_HISTORY));
+            ps.setString(1, world);
+            ps.setInt(2, PackedPos.x(pos));
+            ps.setInt(3, PackedPos.z(pos));
+            ps.setInt(4, PackedPos.y(pos));
+            ps.setLong(5, after.time());
+            ps.setLong(6, after.time());
+            ps.setLong(7, after.id());
+            ps.setInt(8, limit);
+
+            List<Keyed<HistoryRow>> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long time = rs.getLong("time");
+                    rows.add(new Keyed<>(new Cursor(time, rs.getLong("id")), new HistoryRow(
+                            rs.getString("action"),
+                            rs.getString("item"),
+                            rs.getInt("amount"),
+                            rs.getString("player"),
+                            time,
+                            rs.getBytes("item_data")
+                    )));
+                }
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public List<AreaRow> area(Partitions.Kind kind, String world, int cx, int cz, int radius, long since) throws SQLException {
+        String query = sql(AREA
+                .replace("{table}", kind.prefix())
+                .replace("{sum}", kind == Partitions.Kind.BLOCK ? "COUNT(*)" : "SUM(l.amount)"));
+
+        return AreaRow.sum(readers.read(conn -> {
+            PreparedStatement ps = conn.prepare(query);
+            ps.setString(1, world);
+            ps.setInt(2, cx - radius);
+            ps.setInt(3, cx + radius);
+            ps.setInt(4, cz - radius);
+            ps.setInt(5, cz + radius);
+            ps.setLong(6, since);
+
+            List<AreaRow> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new AreaRow(
+                            rs.getString("player"),
+                            rs.getString("action"),
+                            rs.getString("material"),
+                            rs.getLong("total")
+                    ));
+                }
+            }
+            return rows;
+        }));
+    }
+
+    /**
+     * One seek on the (player, time) index per player id with this name.
+     */
+    @Override
+    public List<ActivityLookup.Row> activity(Partitions.Kind kind, String player, long since, Cursor after, int limit) throws SQLException {
+        String query = sql(ACTIVITY
+                .replace("{table}", kind.prefix())
+                .replace("{amount}", kind == Partitions.Kind.BLOCK ? "0" : "l.amount"));
+        int k = kind.ordinal();
+
+        return readers.read(conn -> {
+            List<Integer> ids = new ArrayList<>();
+            PreparedStatement find = conn.prepare(sql("SELECT id FROM {p}players WHERE name = ?"));
+            find.setString(1, player);
+            try (ResultSet rs = find.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+
+            List<ActivityLookup.Row> rows = new ArrayList<>();
+            PreparedStatement ps = conn.prepare(query);
+            for (int id : ids) {
+                ps.setInt(1, id);
+                ps.setLong(2, since);
+                ps.setLong(3, after.time());
+                ps.setLong(4, after.time());
+                ps.setLong(5, after.id());
+                ps.setInt(6, limit);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(new ActivityLookup.Row(
+                                new ActivityLookup.Cursor(rs.getLong("time"), k, rs.getLong("id")),
+                                rs.getString("action"),
+                                rs.getString("material"),
+                                rs.getInt("amount"),
+                                rs.getString("world"),
+                                PackedPos.pack(rs.getInt("x"), rs.getInt("y"), rs.getInt("z"))
+                        ));
+                    }
+                }
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public List<RollbackJob.Row> rollbackRows(String world, int cx, int cz, int radius, long since,
+                                              @Nullable String player, int limit) throws SQLException {
+        return readers.read(conn -> {
+            PreparedStatement ps = conn.prepare(sql(ROLLBACK));
+            ps.setString(1, world);
+            ps.setInt(2, cx - radius);
+            ps.setInt(3, cx + radius);
+            ps.setInt(4, cz - radius);
+            ps.setInt(5, cz + radius);
+            ps.setLong(6, since);
+            ps.setString(7, player);
+            ps.setString(8, player);
+            ps.setInt(9, limit);
+
+            List<RollbackJob.Row> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new RollbackJob.Row(
+                            PackedPos.pack(rs.getInt("x"), rs.getInt("y"), rs.getInt("z")),
+                            rs.getString("action"),
+                            rs.getString("material")
+                    ));
+                }
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * As of the last purge or startup; information_schema is not queried on the caller's thread.
+     */
+    @Override
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    @Override
+    public int readerCount() {
+        return readers.size();
+    }
+
+    @Override
+    public void close() {
+        readers.close();
+        if (writer != null) {
+            closeQuietly(writer);
+            writer = null;
+        }
+    }
+
+    private void closeQuietly(CachedConnection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "DB close error", e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.mvk.blockLogger;
+
+/**
+ * Block coordinates packed into one long: 26 bits x, 26 bits z, 12 bits y.
+ * The same layout is used by the SQL migrations, keep them in sync.
+ */
+public final class PackedPos {
+
+    private PackedPos() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38)
+                | ((long) (z & 0x3FFFFFF) << 12)
+                | (y & 0xFFF);
+    }
+
+    public static int x(long pos) {
+        return (int) (pos >> 38);
+    }
+
+    public static int y(long pos) {
+        return (int) (pos << 52 >> 52);
+    }
+
+    public static int z(long pos) {
+        return (int) (pos << 26 >> 38);
+    }
+
+    /**
+     * Smallest packed value with this x. All positions with x in [a, b]
+     * lie between {@code minForX(a)} and {@code maxForX(b)}, so an x range is a pos range.
+     */
+    public static long minForX(int x) {
+        return (long) x << 38;
+    }
+
+    public static long maxForX(int x) {
+        return ((long) x << 38) | ((1L << 38) - 1);
+    }
+
+    /**
+     * Chunk key, equal to {@link Partitions#CHUNK_KEY} evaluated on the packed position.
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX * 4194304L + (chunkZ + 2097152L);
+    }
+}
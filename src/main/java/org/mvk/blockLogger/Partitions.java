@@ -0,0 +1,220 @@
+package org.mvk.blockLogger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registry of time partitions. Log rows live in one table per period
+ * ({@code block_logs_20250106}, {@code container_logs_20250106}, ...), so retention
+ * drops whole tables instead of deleting rows, and lookups read the newest tables first.
+ * <p>
+ * Partitions are created and dropped by the writer thread only;
+ * readers get an immutable newest-first snapshot.
+ */
+public class Partitions {
+
+    public enum Kind {
+        BLOCK("block_logs"),
+        CONTAINER("container_logs");
+
+        private final String prefix;
+
+        Kind(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String prefix() {
+            return prefix;
+        }
+    }
+
+    /**
+     * @param start inclusive, epoch millis
+     * @param end   exclusive, epoch millis
+     */
+    public record Partition(String table, Kind kind, long start, long end) {
+
+        boolean contains(long time) {
+            return time >= start && time < end;
+        }
+    }
+
+    /**
+     * SQL expression for the chunk of a row, used by the chunk index. Queries must repeat it
+     * as is (with a table alias if needed) for SQLite to use the index.
+     */
+    public static final String CHUNK_KEY = "(pos >> 42) * 4194304 + ((pos << 26 >> 42) + 2097152)";
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final long spanMs;
+    private volatile List<Partition> blocks = List.of();
+    private volatile List<Partition> containers = List.of();
+
+    public Partitions(int partitionDays) {
+        this.spanMs = Math.max(1, partitionDays) * DAY_MS;
+    }
+
+    public void load(Connection connection) throws SQLException {
+        List<Partition> loadedBlocks = new ArrayList<>();
+        List<Partition> loadedContainers = new ArrayList<>();
+
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name, kind, start_time, end_time FROM partitions ORDER BY start_time DESC")) {
+            while (rs.next()) {
+                Kind kind = Kind.valueOf(rs.getString("kind"));
+                Partition partition = new Partition(rs.getString("name"), kind, rs.getLong("start_time"), rs.getLong("end_time"));
+                (kind == Kind.BLOCK ? loadedBlocks : loadedContainers).add(partition);
+            }
+        }
+
+        blocks = List.copyOf(loadedBlocks);
+        containers = List.copyOf(loadedContainers);
+    }
+
+    /**
+     * Newest first. Safe to call from any thread.
+     */
+    public List<Partition> newestFirst(Kind kind) {
+        return kind == Kind.BLOCK ? blocks : containers;
+    }
+
+    /**
+     * @return whether the partition is still registered, i.e. not dropped by retention
+     */
+    public boolean exists(Partition partition) {
+        return newestFirst(partition.kind()).contains(partition);
+    }
+
+    /**
+     * Table that holds rows written at {@code time}, created on first use. Writer thread only.
+     */
+    public String tableFor(Connection connection, Kind kind, long time) throws SQLException {
+        List<Partition> current = newestFirst(kind);
+        // Майже завжди запис іде в найновішу партицію
+        for (Partition partition : current) {
+            if (partition.contains(time)) return partition.table();
+            if (partition.end() <= time) break;
+        }
+
+        long start = Math.floorDiv(time, spanMs) * spanMs;
+        long end = start + spanMs;
+        // Якщо partition_days змінили, нова партиція не має перекривати старі
+        for (Partition partition : current) {
+            if (partition.end() <= time) {
+                start = Math.max(start, partition.end());
+                break;
+            }
+            end = Math.min(end, partition.start());
+        }
+
+        Partition partition = create(connection, kind, start, end);
+
+        List<Partition> updated = new ArrayList<>(current);
+        updated.add(partition);
+        updated.sort((a, b) -> Long.compare(b.start(), a.start()));
+        publish(kind, updated);
+        return partition.table();
+    }
+
+    /**
+     * Drops every partition that ends at or before {@code cutoff}. Writer thread only.
+     *
+     * @return dropped partitions
+     */
+    public List<Partition> dropBefore(Connection connection, Kind kind, long cutoff) throws SQLException {
+        List<Partition> kept = new ArrayList<>();
+        List<Partition> dropped = new ArrayList<>();
+        for (Partition partition : newestFirst(kind)) {
+            (partition.end() <= cutoff ? dropped : kept).add(partition);
+        }
+        if (dropped.isEmpty()) return dropped;
+
+        // Спочатку прибрати з реєстру, щоб нові пошуки вже не бачили таблиць
+        publish(kind, kept);
+        try (Statement st = connection.createStatement()) {
+            for (Partition partition : dropped) {
+                st.execute("DROP TABLE IF EXISTS " + partition.table());
+                st.execute("DELETE FROM partitions WHERE name = '" + partition.table() + "'");
+            }
+        }
+        return dropped;
+    }
+
+    private Partition create(Connection connection, Kind kind, long start, long end) throws SQLException {
+        String table = kind.prefix() + "_" + SUFFIX.format(LocalDate.ofEpochDay(Math.floorDiv(start, DAY_MS)));
+
+        try (Statement st = connection.createStatement()) {
+            if (kind == Kind.BLOCK) {
+                st.execute("""
+                    CREATE TABLE IF NOT EXISTS %s (
+                        id INTEGER PRIMARY KEY,
+                        world INTEGER NOT NULL,
+                        pos INTEGER NOT NULL,
+                        action INTEGER NOT NULL,
+                        material INTEGER NOT NULL,
+                        player INTEGER NOT NULL,
+                        time INTEGER NOT NULL
+                    )
+                """.formatted(table));
+            } else {
+                st.execute("""
+                    CREATE TABLE IF NOT EXISTS %s (
+                        id INTEGER PRIMARY KEY,
+                        world INTEGER NOT NULL,
+                        pos INTEGER NOT NULL,
+                        action INTEGER NOT NULL,
+                        material INTEGER NOT NULL,
+                        amount INTEGER NOT NULL,
+                        player INTEGER NOT NULL,
+                        time INTEGER NOT NULL,
+                        item INTEGER
+                    )
+                """.formatted(table));
+            }
+            // Пошук по блоку одразу віддає рядки від найновіших
+            st.execute("CREATE INDEX IF NOT EXISTS %1$s_pos ON %1$s(world, pos, time)".formatted(table));
+            createChunkIndex(st, table);
+            createPlayerIndex(st, table);
+            st.execute("INSERT OR REPLACE INTO partitions (name, kind, start_time, end_time) VALUES ('%s', '%s', %d, %d)"
+                    .formatted(table, kind.name(), start, end));
+        }
+        return new Partition(table, kind, start, end);
+    }
+
+    /**
+     * Index for area lookups: one seek per chunk, limited to a time window.
+     */
+    static void createChunkIndex(Statement st, String table) throws SQLException {
+        st.execute("CREATE INDEX IF NOT EXISTS %1$s_chunk ON %1$s(world, %2$s, time)".formatted(table, CHUNK_KEY));
+    }
+
+    /**
+     * Index for player lookups: newest actions of one player without a sort.
+     */
+    static void createPlayerIndex(Statement st, String table) throws SQLException {
+        st.execute("CREATE INDEX IF NOT EXISTS %1$s_player ON %1$s(player, time)".formatted(table));
+    }
+
+    private void publish(Kind kind, List<Partition> partitions) {
+        if (kind == Kind.BLOCK) {
+            blocks = List.copyOf(partitions);
+        } else {
+            containers = List.copyOf(partitions);
+        }
+    }
+
+    /**
+     * Formats the SQL for one partition by replacing {@code {table}}.
+     */
+    public static String sql(String template, Partition partition) {
+        return template.replace("{table}", partition.table());
+    }
+}
@@ -0,0 +1,207 @@
+package org.mvk.blockLogger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Rollback or restore of logged block changes. The plan is built off the main thread;
+ * the blocks are set a slice per tick, each slice bounded by block count and by time,
+ * so a large grief is reverted without a lag spike.
+ * <p>
+ * Every slice runs on the thread that owns the chunk of its first change and stops at the first
+ * change owned by another thread; on Paper that is always the main thread.
+ */
+public class RollbackJob implements Runnable {
+
+    public enum Mode {
+        ROLLBACK,
+        RESTORE
+    }
+
+    /**
+     * One logged block change, as read from storage.
+     */
+    public record Row(long pos, String action, String material) {
+    }
+
+    /**
+     * Final material for one position.
+     */
+    public record Change(long pos, Material material) {
+    }
+
+    private static final int PROGRESS_EVERY_TICKS = 20;
+
+    private final Scheduling scheduling;
+    private final UUID worldId;
+    private final List<Change> changes;
+    private final int maxBlocksPerTick;
+    private final long maxNanosPerTick;
+    private final Consumer<RollbackJob> onProgress;
+    private final Consumer<RollbackJob> onDone;
+
+    private Scheduling.Task task;
+    // Пише лише потік поточного зрізу, читають повідомлення про прогрес
+    private volatile int index;
+    private volatile int changed;
+    private int ticks;
+    private long startedAt;
+    private volatile boolean done;
+
+    public RollbackJob(Scheduling scheduling, World world, List<Change> changes,
+                       int maxBlocksPerTick, long maxMillisPerTick,
+                       Consumer<RollbackJob> onProgress, Consumer<RollbackJob> onDone) {
+        this.scheduling = scheduling;
+        this.worldId = world.getUID();
+        this.changes = changes;
+        this.maxBlocksPerTick = Math.max(1, maxBlocksPerTick);
+        this.maxNanosPerTick = Math.max(1L, maxMillisPerTick) * 1_000_000L;
+        this.onProgress = onProgress;
+        this.onDone = onDone;
+    }
+
+    /**
+     * Collapses rows into one change per position.
+     * Rollback keeps the state before the oldest matching change, restore the state after the newest.
+     *
+     * @param newestFirst matching rows, newest first
+     */
+    public static List<Change> plan(Mode mode, List<Row> newestFirst) {
+        Map<Long, Change> byPos = new HashMap<>();
+
+        for (Row row : newestFirst) {
+            LogAction action = LogAction.fromCode(row.action());
+            if (action != LogAction.PLACE && action != LogAction.BREAK && action != LogAction.EXPLODE) continue;
+
+            Material logged = Material.matchMaterial(row.material());
+            if (logged == null || !logged.isBlock()) continue;
+
+            boolean placed = action == LogAction.PLACE;
+            Material target = (mode == Mode.ROLLBACK) == placed ? Material.AIR : logged;
+            Change change = new Change(row.pos(), target);
+
+            if (mode == Mode.ROLLBACK) {
+                // Старіші рядки йдуть пізніше і перезаписують новіші
+                byPos.put(row.pos(), change);
+            } else {
+                byPos.putIfAbsent(row.pos(), change);
+            }
+        }
+
+        // Чанк за чанком, щоб кожен чанк завантажувався один раз
+        List<Change> changes = new ArrayList<>(byPos.values());
+        changes.sort(Comparator
+                .comparingInt((Change c) -> PackedPos.x(c.pos()) >> 4)
+                .thenComparingInt(c -> PackedPos.z(c.pos()) >> 4)
+                .thenComparingInt(c -> PackedPos.y(c.pos())));
+        return changes;
+    }
+
+    public void start() {
+        startedAt = System.currentTimeMillis();
+        if (changes.isEmpty()) {
+            finish();
+            return;
+        }
+        schedule(Bukkit.getWorld(worldId));
+    }
+
+    // Наступний зріз - у потоці, що володіє чанком наступної зміни
+    private synchronized void schedule(World world) {
+        if (done) return;
+        if (world == null) {
+            finish();
+            return;
+        }
+        long pos = changes.get(index).pos();
+        task = scheduling.runAt(world, PackedPos.x(pos) >> 4, PackedPos.z(pos) >> 4, this, 1L);
+    }
+
+    @Override
+    public void run() {
+        if (done) return;
+
+        World world = Bukkit.getWorld(worldId);
+        if (world == null) {
+            finish();
+            return;
+        }
+
+        long deadline = System.nanoTime() + maxNanosPerTick;
+        int applied = 0;
+        int i = index;
+        int count = changed;
+
+        while (i < changes.size() && applied < maxBlocksPerTick && System.nanoTime() < deadline) {
+            Change change = changes.get(i);
+            int x = PackedPos.x(change.pos());
+            int z = PackedPos.z(change.pos());
+            if (!scheduling.owns(world, x >> 4, z >> 4)) break;
+
+            i++;
+            Block block = world.getBlockAt(x, PackedPos.y(change.pos()), z);
+            if (block.getType() != change.material()) {
+                // Без фізики: відновлений пісок не падає, вода не тече посеред відкату
+                block.setType(change.material(), false);
+                count++;
+            }
+            applied++;
+        }
+        index = i;
+        changed = count;
+
+        if (i >= changes.size()) {
+            finish();
+            return;
+        }
+
+        if (++ticks % PROGRESS_EVERY_TICKS == 0) {
+            onProgress.accept(this);
+        }
+        schedule(world);
+    }
+
+    public void cancel() {
+        finish();
+    }
+
+    private synchronized void finish() {
+        if (done) return;
+        done = true;
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        onDone.accept(this);
+    }
+
+    public boolean done() {
+        return done;
+    }
+
+    public int processed() {
+        return index;
+    }
+
+    public int changed() {
+        return changed;
+    }
+
+    public int total() {
+        return changes.size();
+    }
+
+    public long elapsedMillis() {
+        return System.currentTimeMillis() - startedAt;
+    }
+}
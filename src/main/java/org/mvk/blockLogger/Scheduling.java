@@ -0,0 +1,129 @@
+package org.mvk.blockLogger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs plugin tasks on the thread that owns what they touch. On Folia the world is split into
+ * regions ticked by separate threads, so tasks go to the region scheduler of a block, the entity
+ * scheduler of a player, or the global region. On Paper everything goes to the Bukkit scheduler.
+ */
+public class Scheduling {
+
+    /**
+     * Handle of a scheduled task on either platform.
+     */
+    public interface Task {
+        void cancel();
+    }
+
+    private final Plugin plugin;
+    private final boolean folia;
+
+    public Scheduling(Plugin plugin) {
+        this.plugin = plugin;
+        this.folia = detectFolia();
+    }
+
+    private static boolean detectFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    public boolean folia() {
+        return folia;
+    }
+
+    // ===== GLOBAL =====
+
+    /**
+     * Timer not tied to any block or player: the global region on Folia, the main thread on Paper.
+     */
+    public Task timer(Runnable task, long delayTicks, long periodTicks) {
+        if (folia) {
+            // Folia не приймає нульову затримку
+            return Bukkit.getGlobalRegionScheduler()
+                    .runAtFixedRate(plugin, t -> task.run(), Math.max(1L, delayTicks), periodTicks)::cancel;
+        }
+        return Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks)::cancel;
+    }
+
+    /**
+     * Timer off every game thread, for file and database work.
+     */
+    public Task asyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        if (folia) {
+            return Bukkit.getAsyncScheduler()
+                    .runAtFixedRate(plugin, t -> task.run(), delayTicks * 50L, periodTicks * 50L, TimeUnit.MILLISECONDS)::cancel;
+        }
+        return Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, task, delayTicks, periodTicks)::cancel;
+    }
+
+    // ===== REGION =====
+
+    public boolean owns(Location location) {
+        return folia ? Bukkit.isOwnedByCurrentRegion(location) : Bukkit.isPrimaryThread();
+    }
+
+    public boolean owns(World world, int chunkX, int chunkZ) {
+        return folia ? Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ) : Bukkit.isPrimaryThread();
+    }
+
+    /**
+     * Runs on the thread that owns the location: right away if that is the current thread.
+     */
+    public void runAt(Location location, Runnable task) {
+        if (owns(location)) {
+            task.run();
+        } else if (folia) {
+            Bukkit.getRegionScheduler().execute(plugin, location, task);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    /**
+     * Runs once on the thread that owns the chunk after {@code delayTicks}.
+     */
+    public Task runAt(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        if (folia) {
+            return Bukkit.getRegionScheduler()
+                    .runDelayed(plugin, world, chunkX, chunkZ, t -> task.run(), Math.max(1L, delayTicks))::cancel;
+        }
+        return Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks)::cancel;
+    }
+
+    /**
+     * Timer on the thread that owns the location.
+     */
+    public Task timerAt(Location location, Runnable task, long delayTicks, long periodTicks) {
+        if (folia) {
+            return Bukkit.getRegionScheduler()
+                    .runAtFixedRate(plugin, location, t -> task.run(), Math.max(1L, delayTicks), periodTicks)::cancel;
+        }
+        return Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks)::cancel;
+    }
+
+    // ===== PLAYER =====
+
+    /**
+     * Runs on the thread that owns the player after {@code delayTicks}.
+     * On Folia the task is dropped if the player has left by then.
+     */
+    public void runFor(Player player, Runnable task, long delayTicks) {
+        if (folia) {
+            player.getScheduler().execute(plugin, task, null, Math.max(1L, delayTicks));
+        } else {
+            Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.mvk.blockLogger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Creates and upgrades the SQLite schema. The version is kept in {@code PRAGMA user_version}.
+ * <ul>
+ *     <li>1 - original text tables (world/action/block/player stored per row)</li>
+ *     <li>2 - dictionary tables and packed coordinates with a (world, pos) index</li>
+ *     <li>3 - epoch millis time, rows split into time partitions (see {@link Partitions})</li>
+ *     <li>4 - (world, chunk, time) index on every partition for area lookups</li>
+ *     <li>5 - (player, time) index on every partition, case-insensitive player name index</li>
+ *     <li>6 - {@code items} table of deduplicated {@link ItemSnapshot}s, referenced by container rows</li>
+ * </ul>
+ */
+public final class Schema {
+
+    public static final int VERSION = 6;
+
+    // Як часто міграція повідомляє, скільки рядків уже перенесено
+    private static final int PROGRESS_ROWS = 500_000;
+
+    private Schema() {
+    }
+
+    // Кожен крок міграції - окрема транзакція разом із новим user_version
+    private interface Step {
+        void run(Statement st) throws SQLException;
+    }
+
+    /**
+     * Every version step commits on its own, so an interrupted upgrade resumes from the last
+     * finished step instead of starting over.
+     */
+    public static void migrate(Connection connection, Partitions partitions, Logger logger) throws SQLException {
+        int version = userVersion(connection);
+
+        // До появи user_version таблиці вже могли існувати
+        if (version == 0 && tableExists(connection, "block_logs")) {
+            version = 1;
+        }
+
+        if (version >= VERSION) return;
+
+        // Нова база створюється мовчки, існуюча - з повідомленнями про кожен крок
+        Logger progress = version > 0 ? logger : null;
+        if (progress != null) {
+            progress.info("Upgrading logs.db from schema version " + version + " to " + VERSION
+                    + ", this can take a while on large databases...");
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            if (version == 1) {
+                // Старі рядки йдуть одразу в партиції, без проміжних таблиць v2
+                step(connection, 3, progress, st -> migrateV1ToV3(connection, st, partitions, progress));
+            } else if (version < 2) {
+                step(connection, 2, progress, Schema::createDictionaries);
+            }
+            if (version < 3 && version != 1) {
+                step(connection, 3, progress, st -> migrateToV3(connection, st, partitions, progress));
+            }
+            if (version < 4) {
+                step(connection, 4, progress, st -> migrateToV4(connection, st, partitions));
+            }
+            if (version < 5) {
+                step(connection, 5, progress, st -> migrateToV5(connection, st, partitions));
+            }
+            if (version < 6) {
+                step(connection, 6, progress, st -> migrateToV6(connection, st, partitions));
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void step(Connection connection, int target, Logger progress, Step step) throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Statement st = connection.createStatement()) {
+            step.run(st);
+            st.execute("PRAGMA user_version = " + target);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        if (progress != null) {
+            progress.info("logs.db is now at schema version " + target + " (" + (System.currentTimeMillis() - start) + " ms)");
+        }
+    }
+
+    private static void createDictionaries(Statement st) throws SQLException {
+        st.execute("CREATE TABLE IF NOT EXISTS worlds (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)");
+        st.execute("CREATE TABLE IF NOT EXISTS materials (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)");
+        st.execute("CREATE TABLE IF NOT EXISTS actions (id INTEGER PRIMARY KEY, code TEXT NOT NULL UNIQUE)");
+        st.execute("""
+            CREATE TABLE IF NOT EXISTS players (
+                id INTEGER PRIMARY KEY,
+                uuid TEXT UNIQUE,
+                name TEXT NOT NULL
+            )
+        """);
+        // Джерела без UUID (#creeper, #tnt, старі записи) унікальні за іменем
+        st.execute("CREATE UNIQUE INDEX IF NOT EXISTS players_source ON players(name) WHERE uuid IS NULL");
+    }
+
+    private static void migrateV1ToV3(Connection connection, Statement st, Partitions partitions, Logger progress) throws SQLException {
+        createDictionaries(st);
+        createPartitionTable(st);
+        partitions.load(connection);
+
+        // Старі рядки: дії зберігаються як були (MiniMessage), гравці - лише за іменем
+        st.execute("""
+            INSERT OR IGNORE INTO worlds (name)
+            SELECT COALESCE(world, 'unknown') FROM block_logs
+            UNION SELECT COALESCE(world, 'unknown') FROM container_logs
+        """);
+        st.execute("""
+            INSERT OR IGNORE INTO materials (name)
+            SELECT COALESCE(block, 'unknown') FROM block_logs
+            UNION SELECT COALESCE(item, 'unknown') FROM container_logs
+        """);
+        st.execute("""
+            INSERT OR IGNORE INTO actions (code)
+            SELECT COALESCE(action, 'unknown') FROM block_logs
+            UNION SELECT COALESCE(action, 'unknown') FROM container_logs
+        """);
+        st.execute("""
+            INSERT OR IGNORE INTO players (name)
+            SELECT COALESCE(player, 'unknown') FROM block_logs
+            UNION SELECT COALESCE(player, 'unknown') FROM container_logs
+        """);
+
+        // Координати пакуються як у PackedPos, текстовий час (UTC) -> мілісекунди епохи
+        int blocks = copyToPartitions(connection, partitions, Partitions.Kind.BLOCK, "block_logs", """
+            SELECT w.id AS world,
+                   ((l.x & 67108863) << 38) | ((l.z & 67108863) << 12) | (l.y & 4095) AS pos,
+                   a.id AS action, m.id AS material, 0 AS amount, p.id AS player,
+                   CAST(strftime('%s', COALESCE(l.time, CURRENT_TIMESTAMP)) AS INTEGER) * 1000 AS time
+            FROM block_logs l
+            JOIN worlds w ON w.name = COALESCE(l.world, 'unknown')
+            JOIN actions a ON a.code = COALESCE(l.action, 'unknown')
+            JOIN materials m ON m.name = COALESCE(l.block, 'unknown')
+            JOIN players p ON p.name = COALESCE(l.player, 'unknown') AND p.uuid IS NULL
+            ORDER BY l.id
+        """, progress);
+        int containers = copyToPartitions(connection, partitions, Partitions.Kind.CONTAINER, "container_logs", """
+            SELECT w.id AS world,
+                   ((l.x & 67108863) << 38) | ((l.z & 67108863) << 12) | (l.y & 4095) AS pos,
+                   a.id AS action, m.id AS material, COALESCE(l.amount, 0) AS amount, p.id AS player,
+                   CAST(strftime('%s', COALESCE(l.time, CURRENT_TIMESTAMP)) AS INTEGER) * 1000 AS time
+            FROM container_logs l
+            JOIN worlds w ON w.name = COALESCE(l.world, 'unknown')
+            JOIN actions a ON a.code = COALESCE(l.action, 'unknown')
+            JOIN materials m ON m.name = COALESCE(l.item, 'unknown')
+            JOIN players p ON p.name = COALESCE(l.player, 'unknown') AND p.uuid IS NULL
+            ORDER BY l.id
+        """, progress);
+
+        st.execute("DROP TABLE block_logs");
+        st.execute("DROP TABLE container_logs");
+
+        progress.info("Migrated " + blocks + " block and " + containers + " container rows. "
+                + "Run VACUUM on logs.db while the server is stopped to reclaim the freed space.");
+    }
+
+    private static void createPartitionTable(Statement st) throws SQLException {
+        st.execute("""
+            CREATE TABLE IF NOT EXISTS partitions (
+                name TEXT PRIMARY KEY,
+                kind TEXT NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER NOT NULL
+            )
+        """);
+    }
+
+    /**
+     * Version 2 tables exist only in databases upgraded by an older plugin version,
+     * or as empty tables of a fresh database.
+     */
+    private static void migrateToV3(Connection connection, Statement st, Partitions partitions, Logger progress) throws SQLException {
+        createPartitionTable(st);
+        partitions.load(connection);
+
+        // Нова база: таблиць v2 немає, лише партиції
+        if (!tableExists(connection, "block_logs")) return;
+
+        // Текстовий час (UTC) -> мілісекунди епохи, рядки розкладаються по партиціях за один прохід
+        int blocks = copyToPartitions(connection, partitions, Partitions.Kind.BLOCK, "block_logs", """
+            SELECT world, pos, action, material, 0 AS amount, player,
+                   CAST(strftime('%s', time) AS INTEGER) * 1000 AS time
+            FROM block_logs ORDER BY id
+        """, progress);
+        int containers = copyToPartitions(connection, partitions, Partitions.Kind.CONTAINER, "container_logs", """
+            SELECT world, pos, action, material, amount, player,
+                   CAST(strftime('%s', time) AS INTEGER) * 1000 AS time
+            FROM container_logs ORDER BY id
+        """, progress);
+
+        st.execute("DROP TABLE block_logs");
+        st.execute("DROP TABLE container_logs");
+
+        if (progress != null && blocks + containers > 0) {
+            progress.info("Moved " + blocks + " block and " + containers + " container rows into time partitions.");
+        }
+    }
+
+    private static void migrateToV4(Connection connection, Statement st, Partitions partitions) throws SQLException {
+        partitions.load(connection);
+        // Партиції, створені після v3, отримують індекс одразу при створенні
+        for (Partitions.Kind kind : Partitions.Kind.values()) {
+            for (Partitions.Partition partition : partitions.newestFirst(kind)) {
+                Partitions.createChunkIndex(st, partition.table());
+            }
+        }
+    }
+
+    private static void migrateToV5(Connection connection, Statement st, Partitions partitions) throws SQLException {
+        st.execute("CREATE INDEX IF NOT EXISTS players_name ON players(name COLLATE NOCASE)");
+        partitions.load(connection);
+        for (Partitions.Kind kind : Partitions.Kind.values()) {
+            for (Partitions.Partition partition : partitions.newestFirst(kind)) {
+                Partitions.createPlayerIndex(st, partition.table());
+            }
+        }
+    }
+
+    private static void migrateToV6(Connection connection, Statement st, Partitions partitions) throws SQLException {
+        st.execute("""
+            CREATE TABLE IF NOT EXISTS items (
+                id INTEGER PRIMARY KEY,
+                hash BLOB NOT NULL UNIQUE,
+                data BLOB NOT NULL
+            )
+        """);
+        partitions.load(connection);
+        // Партиції, створені під час цієї ж міграції, вже мають колонку
+        for (Partitions.Partition partition : partitions.newestFirst(Partitions.Kind.CONTAINER)) {
+            if (!columnExists(connection, partition.table(), "item")) {
+                st.execute("ALTER TABLE " + partition.table() + " ADD COLUMN item INTEGER");
+            }
+        }
+    }
+
+    /**
+     * @param source   table the select reads, counted up front for progress messages
+     * @param progress null to copy silently
+     */
+    private static int copyToPartitions(Connection connection, Partitions partitions, Partitions.Kind kind,
+                                        String source, String select, Logger progress) throws SQLException {
+        Map<String, PreparedStatement> inserts = new HashMap<>();
+        int rows = 0;
+        long total = progress == null ? 0 : count(connection, source);
+
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery(select)) {
+            while (rs.next()) {
+                long time = rs.getLong("time");
+                String table = partitions.tableFor(connection, kind, time);
+
+                PreparedStatement ps = inserts.get(table);
+                if (ps == null) {
+                    ps = connection.prepareStatement(kind == Partitions.Kind.BLOCK
+                            ? "INSERT INTO " + table + " (world, pos, action, material, player, time) VALUES (?, ?, ?, ?, ?, ?)"
+                            : "INSERT INTO " + table + " (world, pos, action, material, player, time, amount) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                    inserts.put(table, ps);
+                }
+
+                ps.setInt(1, rs.getInt("world"));
+                ps.setLong(2, rs.getLong("pos"));
+                ps.setInt(3, rs.getInt("action"));
+                ps.setInt(4, rs.getInt("material"));
+                ps.setInt(5, rs.getInt("player"));
+                ps.setLong(6, time);
+                if (kind == Partitions.Kind.CONTAINER) ps.setInt(7, rs.getInt("amount"));
+                ps.addBatch();
+
+                if (++rows % 10_000 == 0) {
+                    for (PreparedStatement insert : inserts.values()) insert.executeBatch();
+                }
+                if (progress != null && rows % PROGRESS_ROWS == 0) {
+                    progress.info("Moving " + kind.prefix() + " rows: " + rows + " / " + total);
+                }
+            }
+
+            for (PreparedStatement insert : inserts.values()) insert.executeBatch();
+        } finally {
+            for (PreparedStatement insert : inserts.values()) insert.close();
+        }
+        return rows;
+    }
+
+    private static long count(Connection connection, String table) throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static int userVersion(Connection connection) throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static boolean columnExists(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getColumns(null, null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getTables(null, null, table, null)) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package org.mvk.blockLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Overflow of the {@link LogWriter} queue: entries that did not fit in memory are appended here
+ * and read back by the writer thread once the queue is empty. Whatever is left when the server
+ * stops or crashes is replayed on the next start.
+ * <p>
+ * Every record carries its length and CRC32, so a record torn by a crash is cut off on open.
+ * The header holds the offset of the first record not yet written to storage.
+ * <p>
+ * Appends come from the spill thread of the {@link LogWriter} (and from its writer thread on shutdown),
+ * reads from the writer thread only.
+ */
+public class SpillFile implements AutoCloseable {
+
+    /*
+     * Файл:
+     *  0 long  зсув першого ще не записаного в базу запису
+     *  8 записи: int довжина, int CRC32 вмісту, вміст
+     * Знімки предметів контейнерів - у кінці вмісту, записи старішої версії їх не мають
+     */
+    private static final int HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+
+    private static final byte BLOCK = 0;
+    private static final byte CONTAINER = 1;
+    private static final byte EXPLOSION = 2;
+    private static final byte CONTAINER_SESSION = 3;
+
+    private final FileChannel channel;
+    private final long maxBytes;
+
+    // Під монітором цього об'єкта
+    private long readOffset;
+    private long writeOffset;
+    private int pending;
+
+    // Лише потік запису: кінець останнього прочитаного через peek
+    private long peekEnd;
+    private int peekCount;
+
+    private volatile long spilled;
+
+    /**
+     * Opens the file and keeps the records that survived; a torn or corrupt tail is cut off.
+     *
+     * @param maxBytes file size limit, appends over it are refused
+     */
+    public SpillFile(Path file, long maxBytes) throws IOException {
+        this.maxBytes = Math.max(HEADER, maxBytes);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            long size = channel.size();
+            long offset = HEADER;
+            if (size >= HEADER) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                channel.read(header, 0);
+                offset = header.flip().getLong();
+                if (offset < HEADER || offset > size) offset = HEADER;
+            }
+            readOffset = offset;
+
+            // Цілі записи після зсуву; перший обірваний або пошкоджений - кінець файлу
+            while (true) {
+                int length = recordLength(offset, size);
+                if (length < 0) break;
+                offset += RECORD_HEADER + length;
+                pending++;
+            }
+            writeOffset = offset;
+
+            if (pending == 0) {
+                reset();
+            } else if (size > writeOffset) {
+                channel.truncate(writeOffset);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return payload length of a valid record at {@code offset}, or -1
+     */
+    private int recordLength(long offset, long size) throws IOException {
+        if (offset + RECORD_HEADER > size) return -1;
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        channel.read(header, offset);
+        header.flip();
+        int length = header.getInt();
+        int crc = header.getInt();
+        if (length <= 0 || offset + RECORD_HEADER + length > size) return -1;
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        channel.read(payload, offset + RECORD_HEADER);
+        return checksum(payload.array()) == crc ? length : -1;
+    }
+
+    // ===== WRITE =====
+
+    /**
+     * Appends one entry. Does not force it to disk, see {@link #force()}.
+     *
+     * @return false if the file is at its size limit and the entry was not written
+     */
+    public synchronized boolean append(LogEntry entry) throws IOException {
+        return append(List.of(entry)) == 1;
+    }
+
+    /**
+     * Appends entries in order with one write, stopping at the size limit.
+     *
+     * @return how many of the first entries were written
+     */
+    public synchronized int append(List<LogEntry> entries) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(entries.size() * 96);
+        DataOutputStream out = new DataOutputStream(records);
+        int count = 0;
+        for (LogEntry entry : entries) {
+            byte[] payload = encode(entry);
+            if (writeOffset + records.size() + RECORD_HEADER + payload.length > maxBytes) break;
+            out.writeInt(payload.length);
+            out.writeInt(checksum(payload));
+            out.write(payload);
+            count++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+        while (buffer.hasRemaining()) {
+            writeOffset += channel.write(buffer, writeOffset);
+        }
+        pending += count;
+        spilled += count;
+        return count;
+    }
+
+    /**
+     * Makes appended records survive a power loss, not only a process crash.
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    // ===== READ =====
+
+    /**
+     * Reads up to {@code max} oldest entries without removing them. Writer thread only.
+     */
+    public List<LogEntry> peek(int max) throws IOException {
+        long offset;
+        long end;
+        synchronized (this) {
+            offset = readOffset;
+            end = writeOffset;
+        }
+
+        List<LogEntry> entries = new ArrayList<>(Math.min(max, 1024));
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (entries.size() < max && offset < end) {
+            header.clear();
+            channel.read(header, offset);
+            int length = header.flip().getInt();
+            int crc = header.getInt();
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, offset + RECORD_HEADER);
+            if (checksum(payload.array()) != crc) {
+                throw new IOException("Spill record checksum mismatch at " + offset);
+            }
+            entries.add(decode(payload.array()));
+            offset += RECORD_HEADER + length;
+        }
+
+        peekEnd = offset;
+        peekCount = entries.size();
+        return entries;
+    }
+
+    /**
+     * Drops the entries returned by the last {@link #peek(int)}; they are in storage now.
+     * The file is emptied once nothing is left.
+     */
+    public synchronized void consume() throws IOException {
+        readOffset = peekEnd;
+        pending -= peekCount;
+        peekCount = 0;
+
+        if (pending == 0) {
+            reset();
+        } else {
+            writeHeader(readOffset);
+        }
+    }
+
+    /**
+     * Drops every pending entry, e.g. after a record turned out to be unreadable.
+     */
+    public synchronized void discard() throws IOException {
+        pending = 0;
+        peekCount = 0;
+        reset();
+    }
+
+    private void reset() throws IOException {
+        channel.truncate(HEADER);
+        readOffset = HEADER;
+        writeOffset = HEADER;
+        peekEnd = HEADER;
+        writeHeader(HEADER);
+    }
+
+    private void writeHeader(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).putLong(offset).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Entries in the file that are not in storage yet.
+     */
+    public synchronized int pending() {
+        return pending;
+    }
+
+    public synchronized long sizeBytes() {
+        return writeOffset;
+    }
+
+    /**
+     * Entries appended since start.
+     */
+    public long spilled() {
+        return spilled;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // ===== ENCODING =====
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(LogEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        if (entry instanceof LogEntry.BlockEntry b) {
+            out.writeByte(BLOCK);
+            out.writeUTF(b.world());
+            out.writeInt(b.x());
+            out.writeInt(b.y());
+            out.writeInt(b.z());
+            out.writeUTF(b.action().name());
+            out.writeUTF(b.block());
+            writeUuid(out, b.playerId());
+            out.writeUTF(b.player());
+            out.writeLong(b.time());
+        } else if (entry instanceof LogEntry.ContainerEntry c) {
+            out.writeByte(CONTAINER);
+            out.writeUTF(c.world());
+            out.writeInt(c.x());
+            out.writeInt(c.y());
+            out.writeInt(c.z());
+            out.writeUTF(c.action().name());
+            out.writeUTF(c.item());
+            out.writeInt(c.amount());
+            writeUuid(out, c.playerId());
+            out.writeUTF(c.player());
+            out.writeLong(c.time());
+            writeBytes(out, c.itemData());
+        } else if (entry instanceof LogEntry.ExplosionEntry e) {
+            out.writeByte(EXPLOSION);
+            out.writeUTF(e.world());
+            out.writeInt(e.positions().length);
+            for (int i = 0; i < e.positions().length; i++) {
+                out.writeLong(e.positions()[i]);
+                out.writeUTF(e.materials()[i]);
+            }
+            writeUuid(out, e.playerId());
+            out.writeUTF(e.source());
+            out.writeLong(e.time());
+        } else if (entry instanceof LogEntry.ContainerSessionEntry s) {
+            out.writeByte(CONTAINER_SESSION);
+            out.writeUTF(s.world());
+            out.writeInt(s.x());
+            out.writeInt(s.y());
+            out.writeInt(s.z());
+            out.writeInt(s.materials().length);
+            for (int i = 0; i < s.materials().length; i++) {
+                out.writeUTF(s.materials()[i]);
+                out.writeInt(s.deltas()[i]);
+            }
+            writeUuid(out, s.playerId());
+            out.writeUTF(s.player());
+            out.writeLong(s.time());
+            for (byte[] itemData : s.itemData()) {
+                writeBytes(out, itemData);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static LogEntry decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        byte type = in.readByte();
+        switch (type) {
+            case BLOCK -> {
+                String world = in.readUTF();
+                int x = in.readInt();
+                int y = in.readInt();
+                int z = in.readInt();
+                LogAction action = LogAction.valueOf(in.readUTF());
+                String block = in.readUTF();
+                UUID playerId = readUuid(in);
+                String player = in.readUTF();
+                return new LogEntry.BlockEntry(world, x, y, z, action, block, playerId, player, in.readLong());
+            }
+            case CONTAINER -> {
+                String world = in.readUTF();
+                int x = in.readInt();
+                int y = in.readInt();
+                int z = in.readInt();
+                LogAction action = LogAction.valueOf(in.readUTF());
+                String item = in.readUTF();
+                int amount = in.readInt();
+                UUID playerId = readUuid(in);
+                String player = in.readUTF();
+                long time = in.readLong();
+                byte[] itemData = in.available() > 0 ? readBytes(in) : null;
+                return new LogEntry.ContainerEntry(world, x, y, z, action, item, itemData, amount, playerId, player, time);
+            }
+            case EXPLOSION -> {
+                String world = in.readUTF();
+                int count = in.readInt();
+                long[] positions = new long[count];
+                String[] materials = new String[count];
+                for (int i = 0; i < count; i++) {
+                    positions[i] = in.readLong();
+                    materials[i] = in.readUTF();
+                }
+                UUID playerId = readUuid(in);
+                String source = in.readUTF();
+                return new LogEntry.ExplosionEntry(world, positions, materials, playerId, source, in.readLong());
+            }
+            case CONTAINER_SESSION -> {
+                String world = in.readUTF();
+                int x = in.readInt();
+                int y = in.readInt();
+                int z = in.readInt();
+                int count = in.readInt();
+                String[] materials = new String[count];
+                int[] deltas = new int[count];
+                for (int i = 0; i < count; i++) {
+                    materials[i] = in.readUTF();
+                    deltas[i] = in.readInt();
+                }
+                UUID playerId = readUuid(in);
+                String player = in.readUTF();
+                long time = in.readLong();
+                byte[][] itemData = new byte[count][];
+                for (int i = 0; i < count && in.available() > 0; i++) {
+                    itemData[i] = readBytes(in);
+                }
+                return new LogEntry.ContainerSessionEntry(world, x, y, z, materials, itemData, deltas, playerId, player, time);
+            }
+            default -> throw new IOException("Unknown spill entry type " + type);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+
+    // -1 - null
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,473 @@
+package org.mvk.blockLogger;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local single-file storage: {@link Database} in WAL mode with rows split into
+ * time partitions, so retention drops whole tables.
+ */
+public class SqliteStorage implements StorageEngine {
+
+    private static final String BLOCK_INSERT = """
+        INSERT INTO {table} (world, pos, action, material, player, time)
+        VALUES (?, ?, ?, ?, ?, ?)
+    """;
+    private static final String CONTAINER_INSERT = """
+        INSERT INTO {table} (world, pos, action, material, amount, player, time, item)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+
+    private static final String BLOCK_HISTORY = """
+        SELECT a.code AS action, m.name AS block, p.name AS player, l.time
+        FROM {table} l
+        JOIN actions a ON a.id = l.action
+        JOIN materials m ON m.id = l.material
+        JOIN players p ON p.id = l.player
+        WHERE l.world = (SELECT id FROM worlds WHERE name = ?) AND l.pos = ?
+        ORDER BY l.time DESC, l.id DESC
+        LIMIT ?
+    """;
+    private static final String CONTAINER_HISTORY = """
+        SELECT l.id, a.code AS action, m.name AS item, l.amount, p.name AS player, l.time, i.data AS item_data
+        FROM {table} l
+        JOIN actions a ON a.id = l.action
+        JOIN materials m ON m.id = l.material
+        JOIN players p ON p.id = l.player
+        LEFT JOIN items i ON i.id = l.item
+        WHERE l.world = (SELECT id FROM worlds WHERE name = ?) AND l.pos = ? AND (l.time, l.id) < (?, ?)
+        ORDER BY l.time DESC, l.id DESC
+        LIMIT ?
+    """;
+    private static final String AREA = """
+        SELECT p.name AS player, a.code AS action, m.name AS material, {sum} AS total
+        FROM {table} l
+        JOIN actions a ON a.id = l.action
+        JOIN materials m ON m.id = l.material
+        JOIN players p ON p.id = l.player
+        WHERE l.world = (SELECT id FROM worlds WHERE name = ?)
+          AND {chunk} = ?
+          AND l.time >= ?
+          AND (l.pos >> 38) BETWEEN ? AND ?
+          AND (l.pos << 26 >> 38) BETWEEN ? AND ?
+        GROUP BY l.player, l.action, l.material
+    """.replace("{chunk}", Partitions.CHUNK_KEY.replace("pos", "l.pos"));
+    private static final String BLOCK_ACTIVITY = """
+        SELECT l.id, l.time, a.code AS action, m.name AS material, 0 AS amount, w.name AS world, l.pos
+        FROM {table} l
+        JOIN actions a ON a.id = l.action
+        JOIN materials m ON m.id = l.material
+        JOIN worlds w ON w.id = l.world
+        WHERE l.player = ? AND l.time >= ? AND (l.time, l.id) < (?, ?)
+        ORDER BY l.time DESC, l.id DESC
+        LIMIT ?
+    """;
+    private static final String CONTAINER_ACTIVITY = BLOCK_ACTIVITY.replace("0 AS amount", "l.amount");
+    // Як і AREA: по чанку за запит індексом (world, чанк, time), а не всю смугу x
+    private static final String ROLLBACK = """
+        SELECT l.pos, a.code AS action, m.name AS material
+        FROM {table} l
+        JOIN actions a ON a.id = l.action
+        JOIN materials m ON m.id = l.material
+        WHERE l.world = (SELECT id FROM worlds WHERE name = ?)
+          AND {chunk} = ?
+          AND l.time >= ?
+          AND (l.pos >> 38) BETWEEN ? AND ?
+          AND (l.pos << 26 >> 38) BETWEEN ? AND ?
+          AND (? IS NULL OR l.player IN (SELECT id FROM players WHERE name = ? COLLATE NOCASE))
+        ORDER BY l.time DESC, l.id DESC
+        LIMIT ?
+    """.replace("{chunk}", Partitions.CHUNK_KEY.replace("pos", "l.pos"));
+
+
+    private final Database database;
+    private final Logger logger;
+    private final CachedConnection cached;
+    private final Connection connection;
+    private final Partitions partitions;
+    // Лише для потоку запису
+    private final Dictionaries dictionaries;
+
+    /**
+     * @param database already opened
+     */
+    public SqliteStorage(Database database, Logger logger) {
+        this.database = database;
+        this.logger = logger;
+        this.cached = database.writer();
+        this.connection = cached.raw();
+        this.partitions = database.partitions();
+        this.dictionaries = new Dictionaries(cached, Dictionaries.Dialect.SQLITE, "");
+    }
+
+    public Database database() {
+        return database;
+    }
+
+    @Override
+    public String name() {
+        return "sqlite";
+    }
+
+    // ===== WRITE =====
+
+    private PreparedStatement insert(Map<String, PreparedStatement> used, Partitions.Kind kind, long time) throws SQLException {
+        String table = partitions.tableFor(connection, kind, time);
+        PreparedStatement ps = used.get(table);
+        if (ps == null) {
+            ps = cached.prepare((kind == Partitions.Kind.BLOCK ? BLOCK_INSERT : CONTAINER_INSERT).replace("{table}", table));
+            used.put(table, ps);
+        }
+        return ps;
+    }
+
+    @Override
+    public boolean write(List<LogEntry> batch) {
+
+        // Партиція -> запит вставки; пачка біля межі періоду може писати у дві
+        Map<String, PreparedStatement> used = new LinkedHashMap<>();
+        try {
+            connection.setAutoCommit(false);
+
+            for (LogEntry entry : batch) {
+                if (entry instanceof LogEntry.BlockEntry b) {
+                    PreparedStatement blockInsert = insert(used, Partitions.Kind.BLOCK, b.time());
+                    blockInsert.setInt(1, dictionaries.world(b.world()));
+                    blockInsert.setLong(2, PackedPos.pack(b.x(), b.y(), b.z()));
+                    blockInsert.setInt(3, dictionaries.action(b.action().code()));
+                    blockInsert.setInt(4, dictionaries.material(b.block()));
+                    blockInsert.setInt(5, dictionaries.player(b.playerId(), b.player()));
+                    blockInsert.setLong(6, b.time());
+                    blockInsert.addBatch();
+                } else if (entry instanceof LogEntry.ContainerEntry c) {
+                    PreparedStatement containerInsert = insert(used, Partitions.Kind.CONTAINER, c.time());
+                    containerInsert.setInt(1, dictionaries.world(c.world()));
+                    containerInsert.setLong(2, PackedPos.pack(c.x(), c.y(), c.z()));
+                    containerInsert.setInt(3, dictionaries.action(c.action().code()));
+                    containerInsert.setInt(4, dictionaries.material(c.item()));
+                    containerInsert.setInt(5, c.amount());
+                    containerInsert.setInt(6, dictionaries.player(c.playerId(), c.player()));
+                    containerInsert.setLong(7, c.time());
+                    containerInsert.setInt(8, dictionaries.item(c.itemData()));
+                    containerInsert.addBatch();
+                } else if (entry instanceof LogEntry.ContainerSessionEntry c) {
+                    int world = dictionaries.world(c.world());
+                    long pos = PackedPos.pack(c.x(), c.y(), c.z());
+                    int player = dictionaries.player(c.playerId(), c.player());
+                    PreparedStatement containerInsert = insert(used, Partitions.Kind.CONTAINER, c.time());
+
+                    for (int i = 0; i < c.materials().length; i++) {
+                        int delta = c.deltas()[i];
+                        LogAction action = delta > 0 ? LogAction.PUT : LogAction.TAKE;
+
+                        containerInsert.setInt(1, world);
+                        containerInsert.setLong(2, pos);
+                        containerInsert.setInt(3, dictionaries.action(action.code()));
+                        containerInsert.setInt(4, dictionaries.material(c.materials()[i]));
+                        containerInsert.setInt(5, Math.abs(delta));
+                        containerInsert.setInt(6, player);
+                        containerInsert.setLong(7, c.time());
+                        containerInsert.setInt(8, dictionaries.item(c.itemData()[i]));
+                        containerInsert.addBatch();
+                    }
+                } else if (entry instanceof LogEntry.ExplosionEntry x) {
+                    int world = dictionaries.world(x.world());
+                    int action = dictionaries.action(LogAction.EXPLODE.code());
+                    int player = dictionaries.player(x.playerId(), x.source());
+                    PreparedStatement blockInsert = insert(used, Partitions.Kind.BLOCK, x.time());
+
+                    for (int i = 0; i < x.positions().length; i++) {
+                        blockInsert.setInt(1, world);
+                        blockInsert.setLong(2, x.positions()[i]);
+                        blockInsert.setInt(3, action);
+                        blockInsert.setInt(4, dictionaries.material(x.materials()[i]));
+                        blockInsert.setInt(5, player);
+                        blockInsert.setLong(6, x.time());
+                        blockInsert.addBatch();
+                    }
+                }
+            }
+
+            for (PreparedStatement ps : used.values()) {
+                ps.executeBatch();
+            }
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Batch write error (" + batch.size() + " entries)", e);
+            dictionaries.clear();
+            try {
+                // Невиконані рядки не мають потрапити в наступну пачку
+                for (PreparedStatement ps : used.values()) {
+                    ps.clearBatch();
+                }
+                connection.rollback();
+            } catch (SQLException ex) {
+                logger.log(Level.SEVERE, "Rollback error", ex);
+            }
+            // Партиції, створені у відкоченій транзакції, більше не існують
+            reloadPartitions();
+            return false;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Auto-commit reset error", e);
+            }
+        }
+    }
+
+    @Override
+    public void purge(Partitions.Kind kind, long before) throws SQLException {
+        try {
+            int dropped = partitions.dropBefore(connection, kind, before).size();
+            if (dropped > 0) {
+                logger.info("Retention: dropped " + dropped + " expired " + kind.prefix() + " partitions");
+                if (kind == Partitions.Kind.CONTAINER) deleteUnusedItems();
+            }
+        } catch (SQLException e) {
+            reloadPartitions();
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes snapshots no container row refers to any more, so the items table shrinks with retention.
+     * One scan of every remaining container partition.
+     */
+    private void deleteUnusedItems() throws SQLException {
+        List<String> used = new ArrayList<>();
+        for (Partitions.Partition partition : partitions.newestFirst(Partitions.Kind.CONTAINER)) {
+            // Старі рядки мають NULL, а NULL у NOT IN не дав би видалити нічого
+            used.add("SELECT item FROM " + partition.table() + " WHERE item > 0");
+        }
+
+        try (Statement st = connection.createStatement()) {
+            int deleted = st.executeUpdate(used.isEmpty()
+                    ? "DELETE FROM items"
+                    : "DELETE FROM items WHERE id NOT IN (" + String.join(" UNION ALL ", used) + ")");
+            if (deleted > 0) {
+                logger.info("Retention: deleted " + deleted + " unused item snapshots");
+            }
+        } finally {
+            // Кешовані id могли належати видаленим знімкам
+            dictionaries.clearItems();
+        }
+    }
+
+    private void reloadPartitions() {
+        try {
+            partitions.load(connection);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Partition reload error", e);
+        }
+    }
+
+    // ===== READ =====
+
+    @Override
+    public List<HistoryRow> blockHistory(String world, long pos, int limit) throws SQLException {
+        return database.readNewestFirst(Partitions.Kind.BLOCK, limit, (conn, partition, remaining) -> {
+            PreparedStatement ps = conn.prepare(Partitions.sql(BLOCK_HISTORY, partition));
+            ps.setString(1, world);
+            ps.setLong(2, pos);
+            ps.setInt(3, remaining);
+
+            List<HistoryRow> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new HistoryRow(
+                            rs.getString("action"),
+                            rs.getString("block"),
+                            0,
+                            rs.getString("player"),
+                            rs.getLong("time")
+                    ));
+                }
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public List<Keyed<HistoryRow>> containerHistory(String world, long pos, Cursor after, int limit) throws SQLException {
+        return database.readNewestFirst(Partitions.Kind.CONTAINER, limit, (conn, partition, remaining) -> {
+            if (partition.start() > after.time()) return List.of();
+
+            PreparedStatement ps = conn.prepare(Partitions.sql(CONTAINER_HISTORY, partition));
+            ps.setString(1, world);
+            ps.setLong(2, pos);
+            ps.setLong(3, after.time());
+            ps.setLong(4, after.id());
+            ps.setInt(5, remaining);
+
+            List<Keyed<HistoryRow>> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long time = rs.getLong("time");
+                    rows.add(new Keyed<>(new Cursor(time, rs.getLong("id")), new HistoryRow(
+                            rs.getString("action"),
+                            rs.getString("item"),
+                            rs.getInt("amount"),
+                            rs.getString("player"),
+                            time,
+                            rs.getBytes("item_data")
+                    )));
+                }
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Reads one chunk at a time through the chunk index of each partition.
+     */
+    @Override
+    public List<AreaRow> area(Partitions.Kind kind, String world, int cx, int cz, int radius, long since) throws SQLException {
+        String sql = AREA.replace("{sum}", kind == Partitions.Kind.BLOCK ? "COUNT(*)" : "SUM(l.amount)");
+
+        return AreaRow.sum(database.readNewestFirst(kind, since, Integer.MAX_VALUE, (conn, partition, remaining) -> {
+            PreparedStatement ps = conn.prepare(Partitions.sql(sql, partition));
+            List<AreaRow> result = new ArrayList<>();
+
+            for (int chunkX = (cx - radius) >> 4; chunkX <= (cx + radius) >> 4; chunkX++) {
+                for (int chunkZ = (cz - radius) >> 4; chunkZ <= (cz + radius) >> 4; chunkZ++) {
+                    ps.setString(1, world);
+                    ps.setLong(2, PackedPos.chunkKey(chunkX, chunkZ));
+                    ps.setLong(3, since);
+                    ps.setInt(4, cx - radius);
+                    ps.setInt(5, cx + radius);
+                    ps.setInt(6, cz - radius);
+                    ps.setInt(7, cz + radius);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            result.add(new AreaRow(
+                                    rs.getString("player"),
+                                    rs.getString("action"),
+                                    rs.getString("material"),
+                                    rs.getLong("total")
+                            ));
+                        }
+                    }
+                }
+            }
+            return result;
+        }));
+    }
+
+    /**
+     * One seek on the (player, time) index per partition and player id.
+     */
+    @Override
+    public List<ActivityLookup.Row> activity(Partitions.Kind kind, String player, long since, Cursor after, int limit) throws SQLException {
+        String sql = kind == Partitions.Kind.BLOCK ? BLOCK_ACTIVITY : CONTAINER_ACTIVITY;
+        int k = kind.ordinal();
+
+        List<ActivityLookup.Row> result = new ArrayList<>();
+        // Старі записи без UUID і записи з UUID мають різні id при тому самому імені
+        for (int playerId : playerIds(player)) {
+            result.addAll(database.readNewestFirst(kind, since, limit, (conn, partition, remaining) -> {
+                if (partition.start() > after.time()) return List.of();
+
+                PreparedStatement ps = conn.prepare(Partitions.sql(sql, partition));
+                ps.setInt(1, playerId);
+                ps.setLong(2, since);
+                ps.setLong(3, after.time());
+                ps.setLong(4, after.id());
+                ps.setInt(5, remaining);
+
+                List<ActivityLookup.Row> rows = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(new ActivityLookup.Row(
+                                new ActivityLookup.Cursor(rs.getLong("time"), k, rs.getLong("id")),
+                                rs.getString("action"),
+                                rs.getString("material"),
+                                rs.getInt("amount"),
+                                rs.getString("world"),
+                                rs.getLong("pos")
+                        ));
+                    }
+                }
+                return rows;
+            }));
+        }
+        return result;
+    }
+
+    private List<Integer> playerIds(String player) throws SQLException {
+        return database.read(conn -> {
+            PreparedStatement ps = conn.prepare("SELECT id FROM players WHERE name = ? COLLATE NOCASE");
+            ps.setString(1, player);
+
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * Reads one chunk at a time through the chunk index of each partition, like {@link #area}.
+     */
+    @Override
+    public List<RollbackJob.Row> rollbackRows(String world, int cx, int cz, int radius, long since,
+                                              @Nullable String player, int limit) throws SQLException {
+        return database.readNewestFirst(Partitions.Kind.BLOCK, since, limit, (conn, partition, remaining) -> {
+            PreparedStatement ps = conn.prepare(Partitions.sql(ROLLBACK, partition));
+            List<RollbackJob.Row> rows = new ArrayList<>();
+
+            for (int chunkX = (cx - radius) >> 4; chunkX <= (cx + radius) >> 4; chunkX++) {
+                for (int chunkZ = (cz - radius) >> 4; chunkZ <= (cz + radius) >> 4; chunkZ++) {
+                    if (rows.size() >= remaining) return rows;
+
+                    ps.setString(1, world);
+                    ps.setLong(2, PackedPos.chunkKey(chunkX, chunkZ));
+                    ps.setLong(3, since);
+                    ps.setInt(4, cx - radius);
+                    ps.setInt(5, cx + radius);
+                    ps.setInt(6, cz - radius);
+                    ps.setInt(7, cz + radius);
+                    ps.setString(8, player);
+                    ps.setString(9, player);
+                    ps.setInt(10, remaining - rows.size());
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            rows.add(new RollbackJob.Row(rs.getLong("pos"), rs.getString("action"), rs.getString("material")));
+                        }
+                    }
+                }
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public long sizeBytes() {
+        return database.sizeBytes();
+    }
+
+    @Override
+    public int readerCount() {
+        return database.readerCount();
+    }
+
+    @Override
+    public void close() {
+        database.close();
+    }
+}
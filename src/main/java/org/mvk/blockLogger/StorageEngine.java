@@ -0,0 +1,94 @@
+package org.mvk.blockLogger;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Where log rows are kept: {@link SqliteStorage}, {@link MysqlStorage},
+ * or {@link CoreProtectStorage} in front of one of them.
+ * <p>
+ * {@link #write} and {@link #purge} are called from the {@link LogWriter} thread only;
+ * lookups come from the lookup executor, several at once.
+ * Every lookup returns rows newest first, ordered by (time, id).
+ */
+public interface StorageEngine extends AutoCloseable {
+
+    /**
+     * Position of a row in newest-first order, for keyset paging:
+     * a page continues with rows strictly before the cursor.
+     */
+    record Cursor(long time, long id) {
+        public static final Cursor START = new Cursor(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    record Keyed<R>(Cursor cursor, R row) {
+    }
+
+    /**
+     * Short name for logs and {@code /bl stats}, e.g. {@code sqlite}.
+     */
+    String name();
+
+    // ===== WRITE =====
+
+    /**
+     * Writes the entries in one transaction.
+     *
+     * @return whether the batch was committed; a failed batch is rolled back and logged
+     */
+    boolean write(List<LogEntry> batch);
+
+    /**
+     * Removes rows of {@code kind} older than {@code before}. May keep some older rows
+     * when the storage removes whole periods at once.
+     */
+    void purge(Partitions.Kind kind, long before) throws SQLException;
+
+    // ===== READ =====
+
+    /**
+     * Newest rows of one block, at most {@code limit}.
+     */
+    List<HistoryRow> blockHistory(String world, long pos, int limit) throws SQLException;
+
+    /**
+     * Container rows of one block before {@code after}, at most {@code limit}.
+     */
+    List<Keyed<HistoryRow>> containerHistory(String world, long pos, Cursor after, int limit) throws SQLException;
+
+    /**
+     * Rows of {@code kind} in a square around (cx, cz), full height, newer than {@code since},
+     * summed per player, action and material.
+     */
+    List<AreaRow> area(Partitions.Kind kind, String world, int cx, int cz, int radius, long since) throws SQLException;
+
+    /**
+     * Rows of {@code kind} by every player with this name (case-insensitive),
+     * newer than {@code since} and before {@code after}, at most {@code limit}.
+     */
+    List<ActivityLookup.Row> activity(Partitions.Kind kind, String player, long since, Cursor after, int limit) throws SQLException;
+
+    /**
+     * Block rows in a square around (cx, cz), full height, newer than {@code since}, at most {@code limit}.
+     * Rows of one position come newest first; rows of different positions may interleave in any order.
+     *
+     * @param player player name, or null for everyone
+     */
+    List<RollbackJob.Row> rollbackRows(String world, int cx, int cz, int radius, long since,
+                                       @Nullable String player, int limit) throws SQLException;
+
+    /**
+     * Storage size in bytes, or -1 if unknown. Cheap: safe to call on the main thread.
+     */
+    long sizeBytes();
+
+    /**
+     * Number of lookups that can run at once.
+     */
+    int readerCount();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,65 @@
+package org.mvk.blockLogger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers who placed or ignited TNT, so explosions can be attributed
+ * without a history lookup. Thread-safe: on Folia TNT events come from several region threads.
+ */
+public class TntTracker {
+
+    public record Attribution(UUID playerId, String name) {
+    }
+
+    private final Map<String, Attribution> placed;
+    private final Map<UUID, Attribution> primed;
+
+    public TntTracker(int maxEntries) {
+        this.placed = lru(maxEntries);
+        this.primed = lru(maxEntries);
+    }
+
+    public synchronized void placed(String world, long pos, UUID playerId, String name) {
+        placed.put(key(world, pos), new Attribution(playerId, name));
+    }
+
+    public synchronized void removed(String world, long pos) {
+        placed.remove(key(world, pos));
+    }
+
+    /**
+     * A TNT entity appeared at the given block. The placer of that block wins,
+     * otherwise the igniting player or the TNT that chain-primed it.
+     *
+     * @param igniter player that ignited it, or null
+     * @param parent  primed TNT that caused this one, or null
+     */
+    public synchronized void primed(UUID entityId, String world, long pos, Attribution igniter, UUID parent) {
+        Attribution attribution = placed.remove(key(world, pos));
+        if (attribution == null) attribution = igniter;
+        if (attribution == null && parent != null) attribution = primed.get(parent);
+        if (attribution != null) primed.put(entityId, attribution);
+    }
+
+    /**
+     * @return who is responsible for the exploding TNT entity, or null if unknown
+     */
+    public synchronized Attribution exploded(UUID entityId) {
+        return primed.remove(entityId);
+    }
+
+    private static String key(String world, long pos) {
+        return world + ':' + pos;
+    }
+
+    private static <K, V> Map<K, V> lru(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}
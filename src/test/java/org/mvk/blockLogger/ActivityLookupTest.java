@@ -0,0 +1,100 @@
+package org.mvk.blockLogger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ActivityLookupTest {
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    @TempDir
+    Path dir;
+
+    private SqliteStorage storage;
+
+    @BeforeEach
+    void open() throws Exception {
+        Logger logger = Logger.getLogger("test");
+        Database database = new Database(dir.resolve("logs.db").toFile(), logger);
+        database.open(1, 7);
+        storage = new SqliteStorage(database, logger);
+
+        // Блоки і контейнери з однаковим часом: порядок тримається на (time, kind, id)
+        List<LogEntry> batch = new ArrayList<>();
+        for (long time : new long[]{1000, 2000, 2000, 3000}) {
+            batch.add(new LogEntry.BlockEntry("world", 0, 64, 0, LogAction.PLACE, "STONE", PLAYER, "Steve", time));
+            batch.add(new LogEntry.ContainerEntry("world", 1, 64, 1, LogAction.PUT, "DIAMOND", null, 1, PLAYER, "Steve", time));
+        }
+        assertTrue(storage.write(batch));
+    }
+
+    @AfterEach
+    void close() {
+        storage.close();
+    }
+
+    @Test
+    void pagesCoverEveryRowOnce() throws Exception {
+        for (int pageSize = 1; pageSize <= 9; pageSize++) {
+            ActivityLookup lookup = new ActivityLookup(storage, "Steve", "all", Long.MIN_VALUE, pageSize);
+
+            List<ActivityLookup.Cursor> cursors = new ArrayList<>();
+            Set<ActivityLookup.Cursor> seen = new HashSet<>();
+            for (int number = 1; ; number++) {
+                ActivityLookup.Page page = lookup.page(number);
+                assertEquals(number, page.number());
+                for (ActivityLookup.Row row : page.rows()) {
+                    assertTrue(seen.add(row.cursor()), "row repeated, page size " + pageSize);
+                    cursors.add(row.cursor());
+                }
+                if (!page.hasMore()) break;
+            }
+
+            assertEquals(8, cursors.size(), "page size " + pageSize);
+            for (int i = 1; i < cursors.size(); i++) {
+                ActivityLookup.Cursor newer = cursors.get(i - 1);
+                ActivityLookup.Cursor older = cursors.get(i);
+                assertTrue(newer.time() > older.time()
+                        || newer.time() == older.time() && newer.kind() > older.kind()
+                        || newer.time() == older.time() && newer.kind() == older.kind() && newer.id() > older.id(),
+                        "out of order at " + i + ", page size " + pageSize);
+            }
+        }
+    }
+
+    @Test
+    void pagePastEndReturnsLastPage() throws Exception {
+        ActivityLookup lookup = new ActivityLookup(storage, "Steve", "all", Long.MIN_VALUE, 3);
+
+        ActivityLookup.Page page = lookup.page(10);
+
+        assertEquals(3, page.number());
+        assertEquals(2, page.rows().size());
+        assertFalse(page.hasMore());
+        assertEquals(1000L, page.rows().get(1).cursor().time());
+    }
+
+    @Test
+    void pagesCanBeRevisited() throws Exception {
+        ActivityLookup lookup = new ActivityLookup(storage, "Steve", "all", Long.MIN_VALUE, 2);
+
+        List<ActivityLookup.Row> first = lookup.page(1).rows();
+        lookup.page(4);
+
+        assertEquals(first, lookup.page(1).rows());
+    }
+}
@@ -0,0 +1,114 @@
+package org.mvk.blockLogger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalStorageTest {
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final long POS = PackedPos.pack(10, 64, -20);
+
+    @TempDir
+    Path dir;
+
+    private JournalStorage storage;
+
+    @BeforeEach
+    void open() throws Exception {
+        storage = new JournalStorage(dir, 1, 1, Logger.getLogger("test"));
+    }
+
+    @AfterEach
+    void close() {
+        storage.close();
+    }
+
+    private static LogEntry container(long time) {
+        return new LogEntry.ContainerEntry("world", 10, 64, -20, LogAction.PUT, "DIAMOND", null, 1, PLAYER, "Steve", time);
+    }
+
+    @Test
+    void containerPagesIncludeRowAppendedLate() {
+        // Згорнутий рядок автоматики дописується після новішого рядка гравця
+        assertTrue(storage.write(List.of(container(1000), container(3000), container(2000))));
+
+        List<Long> times = new ArrayList<>();
+        StorageEngine.Cursor after = StorageEngine.Cursor.START;
+        while (true) {
+            List<StorageEngine.Keyed<HistoryRow>> page = storage.containerHistory("world", POS, after, 1);
+            if (page.isEmpty()) break;
+            times.add(page.get(0).row().time());
+            after = page.get(0).cursor();
+        }
+
+        assertEquals(List.of(3000L, 2000L, 1000L), times);
+    }
+
+    @Test
+    void activityPagesIncludeRowAppendedLate() {
+        assertTrue(storage.write(List.of(container(1000), container(3000), container(2000), container(4000))));
+
+        List<Long> times = new ArrayList<>();
+        StorageEngine.Cursor after = StorageEngine.Cursor.START;
+        while (true) {
+            List<ActivityLookup.Row> page = storage.activity(Partitions.Kind.CONTAINER, "Steve", 0, after, 2);
+            if (page.isEmpty()) break;
+            for (ActivityLookup.Row row : page) times.add(row.cursor().time());
+            ActivityLookup.Cursor last = page.get(page.size() - 1).cursor();
+            after = new StorageEngine.Cursor(last.time(), last.id());
+        }
+
+        assertEquals(List.of(4000L, 3000L, 2000L, 1000L), times);
+    }
+
+    @Test
+    void failedBatchAppendsNothing() throws Exception {
+        // Сегмент на 1 МБ вміщує 26214 записів; наступний пакет уже не влазить
+        int capacity = 1048576 / JournalSegment.RECORD_BYTES;
+        List<LogEntry> first = new ArrayList<>();
+        for (int i = 0; i < capacity - 5; i++) first.add(container(1000 + i));
+        assertTrue(storage.write(first));
+
+        // Другий сегмент не створюється, поки на його місці каталог
+        Path blocker = dir.resolve(Partitions.Kind.CONTAINER.prefix()).resolve(JournalSegment.fileName(2));
+        Files.createDirectory(blocker);
+        List<LogEntry> second = new ArrayList<>();
+        for (int i = 0; i < 10; i++) second.add(container(100_000 + i));
+        assertFalse(storage.write(second));
+        assertEquals(capacity - 5, storage.containerHistory("world", POS, StorageEngine.Cursor.START, capacity * 2).size());
+
+        Files.delete(blocker);
+        assertTrue(storage.write(second));
+        assertEquals(capacity + 5, storage.containerHistory("world", POS, StorageEngine.Cursor.START, capacity * 2).size());
+    }
+
+    @Test
+    void areaReadsOlderSegmentPastLateOne() throws Exception {
+        // Перший сегмент - свіжі записи, другий - лише пізно дописані старі
+        int capacity = 1048576 / JournalSegment.RECORD_BYTES;
+        List<LogEntry> fresh = new ArrayList<>();
+        for (int i = 0; i < capacity - 5; i++) fresh.add(container(10_000));
+        assertTrue(storage.write(fresh));
+        List<LogEntry> late = new ArrayList<>();
+        for (int i = 0; i < 10; i++) late.add(container(1000));
+        assertTrue(storage.write(late));
+
+        List<AreaRow> rows = storage.area(Partitions.Kind.CONTAINER, "world", 10, -20, 5, 5000);
+
+        assertEquals(1, rows.size());
+        assertEquals(capacity - 5, rows.get(0).total());
+    }
+}
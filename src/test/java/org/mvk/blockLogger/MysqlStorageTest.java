@@ -0,0 +1,167 @@
+package org.mvk.blockLogger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs against a real server only with {@code mvn test -Pmysql}, see the profile in pom.xml;
+ * skipped otherwise. Every run uses its own table prefix and drops its tables afterwards.
+ */
+class MysqlStorageTest {
+
+    private static final String URL = System.getProperty("blocklogger.mysql.url", "");
+    private static final String USER = System.getProperty("blocklogger.mysql.user", "root");
+    private static final String PASSWORD = System.getProperty("blocklogger.mysql.password", "");
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final String[] TABLES = {"worlds", "materials", "actions", "players", "block_logs", "container_logs", "items"};
+
+    private final String prefix = "bl_test_" + Long.toHexString(System.nanoTime()) + "_";
+    private MysqlStorage storage;
+
+    @BeforeEach
+    void open() throws Exception {
+        assumeTrue(!URL.isEmpty(), "blocklogger.mysql.url is not set");
+        storage = new MysqlStorage(URL, USER, PASSWORD, prefix, 2, Logger.getLogger("test"));
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        if (storage == null) return;
+        storage.close();
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement st = connection.createStatement()) {
+            for (String table : TABLES) {
+                st.execute("DROP TABLE IF EXISTS " + prefix + table);
+            }
+        }
+    }
+
+    private static LogEntry block(int x, long time) {
+        return new LogEntry.BlockEntry("world", x, 64, 0, LogAction.BREAK, "STONE", PLAYER, "Steve", time);
+    }
+
+    private static LogEntry container(String item, byte[] itemData, long time) {
+        return new LogEntry.ContainerEntry("world", 1, 64, 1, LogAction.PUT, item, itemData, 1, PLAYER, "Steve", time);
+    }
+
+    private long count(String table) throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + prefix + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    void writesBatchesLongerThanOneInsert() throws Exception {
+        // Дві повні пачки по 250 рядків і хвіст
+        List<LogEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 600; i++) batch.add(block(i % 7, 1000 + i));
+        assertTrue(storage.write(batch));
+
+        assertEquals(600L, count("block_logs"));
+        List<HistoryRow> rows = storage.blockHistory("world", PackedPos.pack(0, 64, 0), 1000);
+        assertEquals(86, rows.size());
+        assertEquals(1595L, rows.get(0).time());
+    }
+
+    @Test
+    void containerPagesByTimeAndId() throws Exception {
+        // Рядки однієї мілісекунди розрізняються лише за id
+        List<LogEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 7; i++) batch.add(container("DIAMOND", null, 1000 + i / 3));
+        assertTrue(storage.write(batch));
+
+        List<Long> times = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        StorageEngine.Cursor after = StorageEngine.Cursor.START;
+        while (true) {
+            List<StorageEngine.Keyed<HistoryRow>> page = storage.containerHistory("world", PackedPos.pack(1, 64, 1), after, 2);
+            if (page.isEmpty()) break;
+            for (StorageEngine.Keyed<HistoryRow> row : page) {
+                times.add(row.row().time());
+                assertTrue(ids.add(row.cursor().id()), "row repeated across pages");
+            }
+            after = page.get(page.size() - 1).cursor();
+        }
+
+        assertEquals(List.of(1002L, 1001L, 1001L, 1001L, 1000L, 1000L, 1000L), times);
+    }
+
+    @Test
+    void activityPagesByTimeAndId() throws Exception {
+        List<LogEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) batch.add(block(i, 2000 + i / 2));
+        assertTrue(storage.write(batch));
+
+        List<Long> times = new ArrayList<>();
+        StorageEngine.Cursor after = StorageEngine.Cursor.START;
+        while (true) {
+            List<ActivityLookup.Row> page = storage.activity(Partitions.Kind.BLOCK, "steve", 0, after, 2);
+            if (page.isEmpty()) break;
+            for (ActivityLookup.Row row : page) times.add(row.cursor().time());
+            ActivityLookup.Cursor last = page.get(page.size() - 1).cursor();
+            after = new StorageEngine.Cursor(last.time(), last.id());
+        }
+
+        assertEquals(List.of(2002L, 2001L, 2001L, 2000L, 2000L), times);
+    }
+
+    @Test
+    void purgeDeletesMoreThanOneChunk() throws Exception {
+        // 10 000 рядків на один DELETE, тож потрібні два проходи
+        List<LogEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 10_050; i++) batch.add(block(i, 1000));
+        batch.add(block(0, 5000));
+        assertTrue(storage.write(batch));
+
+        storage.purge(Partitions.Kind.BLOCK, 2000);
+
+        assertEquals(1L, count("block_logs"));
+    }
+
+    @Test
+    void itemSnapshotsAreStoredOnce() throws Exception {
+        byte[] sword = {1, 2, 3, 4};
+        assertTrue(storage.write(List.of(
+                container("DIAMOND_SWORD", sword, 1000),
+                container("DIAMOND_SWORD", sword.clone(), 1001),
+                container("DIRT", null, 1002)
+        )));
+
+        assertEquals(1L, count("items"));
+        List<StorageEngine.Keyed<HistoryRow>> rows = storage.containerHistory("world", PackedPos.pack(1, 64, 1), StorageEngine.Cursor.START, 10);
+        assertEquals(3, rows.size());
+        assertNull(rows.get(0).row().itemData());
+        assertArrayEquals(sword, rows.get(1).row().itemData());
+        assertArrayEquals(sword, rows.get(2).row().itemData());
+
+        // Після очищення знімок видаляється, а новий запис того ж предмета додає його знову
+        storage.purge(Partitions.Kind.CONTAINER, 5000);
+        assertEquals(0L, count("items"));
+        assertTrue(storage.write(List.of(container("DIAMOND_SWORD", sword, 6000))));
+        assertEquals(1L, count("items"));
+        assertArrayEquals(sword, storage.containerHistory("world", PackedPos.pack(1, 64, 1), StorageEngine.Cursor.START, 1)
+                .get(0).row().itemData());
+    }
+}
@@ -0,0 +1,58 @@
+package org.mvk.blockLogger;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedPosTest {
+
+    @Test
+    void roundTripsWorldBounds() {
+        int[][] positions = {
+                {0, 0, 0},
+                {-1, -1, -1},
+                {30_000_000, 2047, -30_000_000},
+                {-30_000_000, -2048, 30_000_000},
+                {123, -64, -456},
+                {-17, 319, 17}
+        };
+        for (int[] p : positions) {
+            long pos = PackedPos.pack(p[0], p[1], p[2]);
+            assertEquals(p[0], PackedPos.x(pos));
+            assertEquals(p[1], PackedPos.y(pos));
+            assertEquals(p[2], PackedPos.z(pos));
+        }
+    }
+
+    @Test
+    void xRangeIsPosRange() {
+        for (int x = -3; x <= 3; x++) {
+            for (int z : new int[]{-30_000_000, -1, 0, 30_000_000}) {
+                for (int y : new int[]{-2048, 0, 2047}) {
+                    long pos = PackedPos.pack(x, y, z);
+                    assertTrue(pos >= PackedPos.minForX(x) && pos <= PackedPos.maxForX(x), x + " " + y + " " + z);
+                }
+            }
+        }
+    }
+
+    @Test
+    void chunkKeyMatchesSqlExpression() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+             PreparedStatement ps = connection.prepareStatement("SELECT " + Partitions.CHUNK_KEY + " FROM (SELECT ? AS pos)")) {
+            for (int[] p : new int[][]{{0, 0}, {-1, -1}, {15, 16}, {-17, 33}, {29_999_999, -29_999_999}}) {
+                ps.setLong(1, PackedPos.pack(p[0], 64, p[1]));
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    assertEquals(PackedPos.chunkKey(p[0] >> 4, p[1] >> 4), rs.getLong(1));
+                }
+            }
+        }
+    }
+}
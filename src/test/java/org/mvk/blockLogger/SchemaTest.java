@@ -0,0 +1,101 @@
+package org.mvk.blockLogger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class SchemaTest {
+
+    private static final Logger LOGGER = Logger.getLogger("test");
+
+    @TempDir
+    Path dir;
+
+    private static int userVersion(Connection connection) throws Exception {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void legacyRowsMoveStraightIntoPartitions() throws Exception {
+        File file = dir.resolve("logs.db").toFile();
+        // Таблиці першої версії плагіна, ще без user_version
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement st = connection.createStatement()) {
+            st.execute("""
+                CREATE TABLE block_logs (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    world TEXT, x INT, y INT, z INT,
+                    action TEXT, block TEXT, player TEXT,
+                    time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            st.execute("""
+                CREATE TABLE container_logs (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    world TEXT, x INT, y INT, z INT,
+                    action TEXT, item TEXT, amount INT, player TEXT,
+                    time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            st.execute("INSERT INTO block_logs (world, x, y, z, action, block, player, time) "
+                    + "VALUES ('world', -5, -60, 7, '<red>broke', 'STONE', 'Steve', '2024-05-01 12:00:00')");
+            st.execute("INSERT INTO container_logs (world, x, y, z, action, item, amount, player, time) "
+                    + "VALUES ('world', 3, 64, -9, '<green>put', 'DIAMOND', 4, 'Alex', '2024-05-02 08:30:00')");
+        }
+
+        Database database = new Database(file, LOGGER);
+        database.open(1, 7);
+        SqliteStorage storage = new SqliteStorage(database, LOGGER);
+        try {
+            List<HistoryRow> blocks = storage.blockHistory("world", PackedPos.pack(-5, -60, 7), 10);
+            assertEquals(1, blocks.size());
+            assertEquals("<red>broke", blocks.get(0).action());
+            assertEquals("STONE", blocks.get(0).material());
+            assertEquals("Steve", blocks.get(0).player());
+            assertEquals(Instant.parse("2024-05-01T12:00:00Z").toEpochMilli(), blocks.get(0).time());
+
+            List<StorageEngine.Keyed<HistoryRow>> containers =
+                    storage.containerHistory("world", PackedPos.pack(3, 64, -9), StorageEngine.Cursor.START, 10);
+            assertEquals(1, containers.size());
+            assertEquals(4, containers.get(0).row().amount());
+            assertEquals(Instant.parse("2024-05-02T08:30:00Z").toEpochMilli(), containers.get(0).row().time());
+
+            Connection connection = database.writer().raw();
+            assertEquals(Schema.VERSION, userVersion(connection));
+            try (ResultSet rs = connection.getMetaData().getTables(null, null, "block_logs", null)) {
+                assertFalse(rs.next());
+            }
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    void freshDatabaseGetsCurrentVersion() throws Exception {
+        Database database = new Database(dir.resolve("logs.db").toFile(), LOGGER);
+        database.open(1, 7);
+        SqliteStorage storage = new SqliteStorage(database, LOGGER);
+        try {
+            assertEquals(Schema.VERSION, userVersion(database.writer().raw()));
+            assertEquals(0, storage.blockHistory("world", PackedPos.pack(0, 64, 0), 10).size());
+        } finally {
+            storage.close();
+        }
+    }
+}
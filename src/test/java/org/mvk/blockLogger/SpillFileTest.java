@@ -0,0 +1,224 @@
+package org.mvk.blockLogger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillFileTest {
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final long MAX_BYTES = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    private Path file() {
+        return dir.resolve("spill.bin");
+    }
+
+    private static LogEntry.BlockEntry block(long time) {
+        return new LogEntry.BlockEntry("world", 1, -60, 3, LogAction.BREAK, "STONE", PLAYER, "Steve", time);
+    }
+
+    private static List<Long> times(List<LogEntry> entries) {
+        List<Long> times = new ArrayList<>();
+        for (LogEntry entry : entries) times.add(entry.time());
+        return times;
+    }
+
+    @Test
+    void roundTripsEveryEntryType() throws Exception {
+        byte[] sword = {1, 2, 3};
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            assertEquals(4, spill.append(List.of(
+                    new LogEntry.BlockEntry("world", -5, 70, 9, LogAction.PLACE, "OAK_LOG", null, "#tnt", 1000),
+                    new LogEntry.ContainerEntry("nether", 2, 40, -8, LogAction.TAKE, "DIAMOND_SWORD", sword, 1, PLAYER, "Steve", 2000),
+                    new LogEntry.ExplosionEntry("world", new long[]{PackedPos.pack(1, 2, 3), PackedPos.pack(-1, -2, -3)},
+                            new String[]{"DIRT", "GRASS_BLOCK"}, null, "#creeper", 3000),
+                    new LogEntry.ContainerSessionEntry("world", 7, 64, 7, new String[]{"DIRT", "DIAMOND_SWORD"},
+                            new byte[][]{null, sword}, new int[]{-3, 1}, PLAYER, "Steve", 4000)
+            )));
+        }
+
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            assertEquals(4, spill.pending());
+            List<LogEntry> entries = spill.peek(10);
+            assertEquals(4, entries.size());
+
+            assertEquals(new LogEntry.BlockEntry("world", -5, 70, 9, LogAction.PLACE, "OAK_LOG", null, "#tnt", 1000), entries.get(0));
+
+            LogEntry.ContainerEntry container = (LogEntry.ContainerEntry) entries.get(1);
+            assertEquals("nether", container.world());
+            assertEquals(-8, container.z());
+            assertEquals(LogAction.TAKE, container.action());
+            assertEquals("DIAMOND_SWORD", container.item());
+            assertArrayEquals(sword, container.itemData());
+            assertEquals(PLAYER, container.playerId());
+            assertEquals(2000L, container.time());
+
+            LogEntry.ExplosionEntry explosion = (LogEntry.ExplosionEntry) entries.get(2);
+            assertArrayEquals(new long[]{PackedPos.pack(1, 2, 3), PackedPos.pack(-1, -2, -3)}, explosion.positions());
+            assertArrayEquals(new String[]{"DIRT", "GRASS_BLOCK"}, explosion.materials());
+            assertNull(explosion.playerId());
+            assertEquals("#creeper", explosion.source());
+
+            LogEntry.ContainerSessionEntry session = (LogEntry.ContainerSessionEntry) entries.get(3);
+            assertArrayEquals(new String[]{"DIRT", "DIAMOND_SWORD"}, session.materials());
+            assertArrayEquals(new int[]{-3, 1}, session.deltas());
+            assertNull(session.itemData()[0]);
+            assertArrayEquals(sword, session.itemData()[1]);
+            assertEquals(4000L, session.time());
+        }
+    }
+
+    @Test
+    void consumedEntriesAreNotReplayed() throws Exception {
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            spill.append(List.of(block(1), block(2), block(3)));
+            assertEquals(List.of(1L, 2L), times(spill.peek(2)));
+            spill.consume();
+            assertEquals(1, spill.pending());
+        }
+
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            assertEquals(1, spill.pending());
+            assertEquals(List.of(3L), times(spill.peek(10)));
+            spill.consume();
+            assertEquals(0, spill.pending());
+        }
+        // Порожній файл - лише заголовок
+        assertEquals(8L, Files.size(file()));
+    }
+
+    @Test
+    void tornTailIsCutOff() throws Exception {
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            spill.append(List.of(block(1), block(2), block(3)));
+        }
+        // Процес упав посеред запису останнього запису
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            assertEquals(2, spill.pending());
+            assertTrue(spill.append(block(4)));
+            assertEquals(List.of(1L, 2L, 4L), times(spill.peek(10)));
+        }
+    }
+
+    @Test
+    void corruptRecordEndsFile() throws Exception {
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            spill.append(List.of(block(1), block(2), block(3)));
+        }
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Останній байт - час третього запису
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) (last.get(0) ^ 0x7F)).rewind();
+            channel.write(last, channel.size() - 1);
+        }
+
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            assertEquals(2, spill.pending());
+            assertEquals(List.of(1L, 2L), times(spill.peek(10)));
+        }
+    }
+
+    @Test
+    void recordsWithoutItemTrailerStillRead() throws Exception {
+        // Записи версії до знімків предметів: вміст закінчується часом
+        ByteArrayOutputStream container = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(container)) {
+            out.writeByte(1);
+            out.writeUTF("world");
+            out.writeInt(1);
+            out.writeInt(64);
+            out.writeInt(2);
+            out.writeUTF(LogAction.PUT.name());
+            out.writeUTF("DIAMOND");
+            out.writeInt(5);
+            out.writeBoolean(false);
+            out.writeUTF("Steve");
+            out.writeLong(1000);
+        }
+        ByteArrayOutputStream session = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(session)) {
+            out.writeByte(3);
+            out.writeUTF("world");
+            out.writeInt(1);
+            out.writeInt(64);
+            out.writeInt(2);
+            out.writeInt(2);
+            out.writeUTF("DIRT");
+            out.writeInt(4);
+            out.writeUTF("STONE");
+            out.writeInt(-1);
+            out.writeBoolean(false);
+            out.writeUTF("Steve");
+            out.writeLong(2000);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(8);
+            for (byte[] payload : new byte[][]{container.toByteArray(), session.toByteArray()}) {
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            }
+        }
+        Files.write(file(), bytes.toByteArray());
+
+        try (SpillFile spill = new SpillFile(file(), MAX_BYTES)) {
+            List<LogEntry> entries = spill.peek(10);
+            assertEquals(2, entries.size());
+
+            LogEntry.ContainerEntry c = (LogEntry.ContainerEntry) entries.get(0);
+            assertEquals("DIAMOND", c.item());
+            assertEquals(5, c.amount());
+            assertNull(c.itemData());
+            assertEquals(1000L, c.time());
+
+            LogEntry.ContainerSessionEntry s = (LogEntry.ContainerSessionEntry) entries.get(1);
+            assertArrayEquals(new int[]{4, -1}, s.deltas());
+            assertEquals(2, s.itemData().length);
+            assertNull(s.itemData()[0]);
+            assertNull(s.itemData()[1]);
+            assertEquals(2000L, s.time());
+        }
+    }
+
+    @Test
+    void appendsStopAtSizeLimit() throws Exception {
+        List<LogEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) batch.add(block(i));
+
+        try (SpillFile spill = new SpillFile(file(), 300)) {
+            int written = spill.append(batch);
+            assertTrue(written > 0 && written < 10, "written " + written);
+            assertEquals(written, spill.pending());
+            assertTrue(spill.sizeBytes() <= 300);
+            assertEquals(written, spill.peek(100).size());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.mvk.blockLogger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqliteStorageTest {
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final long DAY = 86_400_000L;
+    private static final long POS = PackedPos.pack(4, 64, 4);
+
+    @TempDir
+    Path dir;
+
+    private SqliteStorage storage;
+
+    @BeforeEach
+    void open() throws Exception {
+        Logger logger = Logger.getLogger("test");
+        Database database = new Database(dir.resolve("logs.db").toFile(), logger);
+        // Партиція на добу, тож рядки різних днів лежать у різних таблицях
+        database.open(1, 1);
+        storage = new SqliteStorage(database, logger);
+    }
+
+    @AfterEach
+    void close() {
+        storage.close();
+    }
+
+    private static LogEntry container(long time) {
+        return new LogEntry.ContainerEntry("world", 4, 64, 4, LogAction.PUT, "DIAMOND", null, 1, PLAYER, "Steve", time);
+    }
+
+    private static LogEntry block(long time) {
+        return new LogEntry.BlockEntry("world", 4, 64, 4, LogAction.BREAK, "STONE", PLAYER, "Steve", time);
+    }
+
+    @Test
+    void containerPagesCrossPartitionsAndEqualTimes() throws Exception {
+        // По три рядки з однаковим часом у кожній з трьох діб
+        List<LogEntry> batch = new ArrayList<>();
+        List<Long> expected = new ArrayList<>();
+        for (int day = 0; day < 3; day++) {
+            for (int i = 0; i < 3; i++) batch.add(container(day * DAY + 1000));
+        }
+        for (int day = 2; day >= 0; day--) {
+            for (int i = 0; i < 3; i++) expected.add(day * DAY + 1000);
+        }
+        assertTrue(storage.write(batch));
+
+        for (int pageSize : new int[]{1, 2, 4, 9, 20}) {
+            List<Long> times = new ArrayList<>();
+            Set<StorageEngine.Cursor> seen = new HashSet<>();
+            StorageEngine.Cursor after = StorageEngine.Cursor.START;
+            while (true) {
+                List<StorageEngine.Keyed<HistoryRow>> page = storage.containerHistory("world", POS, after, pageSize);
+                if (page.isEmpty()) break;
+                for (StorageEngine.Keyed<HistoryRow> row : page) {
+                    times.add(row.row().time());
+                    assertTrue(seen.add(row.cursor()), "row repeated across pages of " + pageSize);
+                }
+                after = page.get(page.size() - 1).cursor();
+            }
+            assertEquals(expected, times, "page size " + pageSize);
+        }
+    }
+
+    @Test
+    void activityPagesCrossPartitions() throws Exception {
+        List<LogEntry> batch = new ArrayList<>();
+        for (int day = 0; day < 3; day++) {
+            batch.add(block(day * DAY + 5));
+            batch.add(block(day * DAY + 5));
+        }
+        assertTrue(storage.write(batch));
+
+        List<Long> times = new ArrayList<>();
+        StorageEngine.Cursor after = StorageEngine.Cursor.START;
+        while (true) {
+            List<ActivityLookup.Row> page = storage.activity(Partitions.Kind.BLOCK, "STEVE", 0, after, 4);
+            if (page.isEmpty()) break;
+            for (ActivityLookup.Row row : page) times.add(row.cursor().time());
+            ActivityLookup.Cursor last = page.get(page.size() - 1).cursor();
+            after = new StorageEngine.Cursor(last.time(), last.id());
+        }
+
+        assertEquals(List.of(2 * DAY + 5, 2 * DAY + 5, DAY + 5, DAY + 5, 5L, 5L), times);
+    }
+
+    @Test
+    void activityRespectsSince() throws Exception {
+        assertTrue(storage.write(List.of(block(1000), block(DAY + 1000), block(2 * DAY + 1000))));
+
+        List<ActivityLookup.Row> rows = storage.activity(Partitions.Kind.BLOCK, "Steve", DAY, StorageEngine.Cursor.START, 10);
+
+        assertEquals(2, rows.size());
+        assertEquals(2 * DAY + 1000, rows.get(0).cursor().time());
+        assertEquals(DAY + 1000, rows.get(1).cursor().time());
+    }
+
+    @Test
+    void rollbackRowsCoverSquareAcrossChunks() throws Exception {
+        List<LogEntry> batch = new ArrayList<>();
+        for (int[] xz : new int[][]{{-1, -1}, {0, 0}, {10, -10}, {-10, 10}, {11, 0}, {0, -11}}) {
+            batch.add(new LogEntry.BlockEntry("world", xz[0], 64, xz[1], LogAction.PLACE, "STONE", PLAYER, "Steve", 1000));
+        }
+        batch.add(new LogEntry.BlockEntry("world", 0, 64, 0, LogAction.BREAK, "STONE", PLAYER, "Steve", 2000));
+        batch.add(new LogEntry.BlockEntry("world", 5, 64, 5, LogAction.PLACE, "DIRT", null, "Alex", 1000));
+        assertTrue(storage.write(batch));
+
+        Set<Long> positions = new HashSet<>();
+        List<RollbackJob.Row> rows = storage.rollbackRows("world", 0, 0, 10, 0, "steve", 100);
+        for (RollbackJob.Row row : rows) positions.add(row.pos());
+
+        assertEquals(5, rows.size());
+        assertEquals(Set.of(PackedPos.pack(-1, 64, -1), PackedPos.pack(0, 64, 0),
+                PackedPos.pack(10, 64, -10), PackedPos.pack(-10, 64, 10)), positions);
+        // Рядки однієї позиції - від новішого
+        List<String> atOrigin = new ArrayList<>();
+        for (RollbackJob.Row row : rows) {
+            if (row.pos() == PackedPos.pack(0, 64, 0)) atOrigin.add(row.action());
+        }
+        assertEquals(List.of(LogAction.BREAK.code(), LogAction.PLACE.code()), atOrigin);
+
+        assertEquals(3, storage.rollbackRows("world", 0, 0, 10, 0, null, 3).size());
+    }
+}